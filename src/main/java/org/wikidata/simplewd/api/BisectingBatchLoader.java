@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Sends the batches with a bounded executor and splits the ones rejected because of entities that do not exist in
+ * two halves until these entities are isolated. The halves are sent with the same executor and no thread waits for
+ * them, so the number of concurrent requests stays bounded by the executor.
+ * <p>
+ * The isolated entities are not in the returned maps.
+ */
+public class BisectingBatchLoader<K, V> implements RequestBatcher.AsyncBatchLoader<K, V> {
+
+    private final BatchRequest<K, V> request;
+    private final Executor executor;
+
+    public BisectingBatchLoader(BatchRequest<K, V> request, Executor executor) {
+        this.request = request;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Map<K, V>> load(List<K> keys) {
+        CompletableFuture<CompletableFuture<Map<K, V>>> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(request.send(keys));
+            } catch (NoSuchEntityErrorException e) {
+                result.complete(split(keys));
+            } catch (MediaWikiApiErrorException e) {
+                result.completeExceptionally(new IOException(e));
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Map<K, V>> split(List<K> keys) {
+        if (keys.size() == 1) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        CompletableFuture<Map<K, V>> firstHalf = load(keys.subList(0, keys.size() / 2));
+        CompletableFuture<Map<K, V>> secondHalf = load(keys.subList(keys.size() / 2, keys.size()));
+        return firstHalf.thenCombine(secondHalf, (firstValues, secondValues) -> {
+            Map<K, V> values = new HashMap<>(firstValues);
+            values.putAll(secondValues);
+            return values;
+        });
+    }
+
+    @FunctionalInterface
+    public interface BatchRequest<K, V> {
+        /**
+         * Sends the request in the calling thread
+         *
+         * @throws NoSuchEntityErrorException if at least one of the keys does not exist
+         */
+        CompletableFuture<Map<K, V>> send(List<K> keys) throws IOException, MediaWikiApiErrorException;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import com.google.common.cache.CacheLoader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.*;
+
+/**
+ * Background executor used to refresh the cache entries that are older than their soft TTL
+ * while the stale value is still served.
+ * <p>
+ * The number of refreshes waiting or in progress is bounded: refreshes submitted beyond this limit are rejected
+ * and the entry is refreshed again on a later access or reloaded synchronously once its hard TTL is reached.
+ */
+final class CacheRefresher {
+
+    private static final int THREAD_COUNT = 4;
+    private static final int MAX_PENDING_REFRESHES = 256;
+    private static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
+            THREAD_COUNT, THREAD_COUNT, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_PENDING_REFRESHES),
+            new ThreadFactoryBuilder().setNameFormat("cache-refresh-%d").setDaemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy()
+    );
+
+    private CacheRefresher() {
+    }
+
+    /**
+     * @return a loader reloading the entries refreshed by {@link com.google.common.cache.CacheBuilder#refreshAfterWrite}
+     * in the background
+     */
+    static <K, V> CacheLoader<K, V> reloadingAsynchronously(CacheLoader<K, V> loader) {
+        return CacheLoader.asyncReloading(loader, EXECUTOR);
+    }
+
+    /**
+     * @return false if the refresh has been rejected because too many refreshes are already pending
+     */
+    static boolean submit(Runnable refresh) {
+        try {
+            EXECUTOR.execute(refresh);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+}
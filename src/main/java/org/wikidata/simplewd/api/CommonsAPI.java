@@ -46,12 +46,13 @@ public class CommonsAPI {
     private LoadingCache<String, EntityValue> imageCache = CacheBuilder.newBuilder()
             .maximumSize(16384) //TODO: configure?
             .expireAfterWrite(14, TimeUnit.DAYS)
-            .build(new CacheLoader<String, EntityValue>() {
+            .refreshAfterWrite(1, TimeUnit.DAYS)
+            .build(CacheRefresher.reloadingAsynchronously(new CacheLoader<String, EntityValue>() {
                 @Override
                 public EntityValue load(String title) throws IOException {
                     return requestImage(title);
                 }
-            });
+            }));
 
     public EntityValue getImage(String title) throws IOException {
         try {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the recorded values in buckets whose upper bounds are the powers of two up to a maximal value.
+ * The values above the maximal value are counted in a last bucket.
+ * <p>
+ * This class is thread-safe.
+ */
+class Histogram {
+
+    private final AtomicLongArray counts;
+
+    Histogram(long maxValue) {
+        counts = new AtomicLongArray(getBucket(maxValue) + 2);
+    }
+
+    void record(long value) {
+        counts.incrementAndGet(Math.min(getBucket(value), counts.length() - 1));
+    }
+
+    /**
+     * @return the number of values by bucket, from the smallest to the largest
+     */
+    Map<String, Long> getCounts() {
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length() - 1; i++) {
+            buckets.put("<=" + (1L << i), counts.get(i));
+        }
+        buckets.put(">" + (1L << (counts.length() - 2)), counts.get(counts.length() - 1));
+        return buckets;
+    }
+
+    private static int getBucket(long value) {
+        return (value <= 1) ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+    }
+}
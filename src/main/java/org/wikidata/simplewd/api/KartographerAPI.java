@@ -48,12 +48,13 @@ public class KartographerAPI {
     private LoadingCache<String, Geometry> shapeCache = CacheBuilder.newBuilder()
             .maximumSize(16384) //TODO: configure?
             .expireAfterWrite(14, TimeUnit.DAYS)
-            .build(new CacheLoader<String, Geometry>() {
+            .refreshAfterWrite(1, TimeUnit.DAYS)
+            .build(CacheRefresher.reloadingAsynchronously(new CacheLoader<String, Geometry>() {
                 @Override
                 public Geometry load(String itemId) throws IOException, ParseException {
                     return requestShapeForItemId(itemId);
                 }
-            });
+            }));
 
     public Geometry getShapeForItemId(String itemURI) throws IOException {
         if (!WIKIDATA_ITEM_URI_PATTERN.matcher(itemURI).matches()) {
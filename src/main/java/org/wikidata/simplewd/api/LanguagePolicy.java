@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.api;
+
+import org.wikidata.simplewd.model.LanguageCodes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Languages of the labels, descriptions and aliases kept when an entity is cached.
+ * <p>
+ * The kept languages are the allowed ones, the languages of their fallback chains and the languages promoted
+ * because they have been requested often enough. The entities requested in an other language are retrieved again
+ * with all their languages.
+ * <p>
+ * This class is thread-safe.
+ */
+public class LanguagePolicy {
+
+    private static final Pattern LANGUAGE_CODE_PATTERN = Pattern.compile("^[a-z]{2,3}(-[a-z0-9]{1,8})*$");
+    private static final int MAX_TRACKED_LANGUAGES = 1024;
+
+    private final Set<String> baseLanguages;
+    private final long promotionThreshold;
+    private volatile Set<String> keptLanguages;
+    private final ConcurrentMap<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+
+    /**
+     * @param allowedLanguages   Wikimedia codes of the languages always kept. The other codes of the same languages
+     *                           (e.g. als for gsw) and the more generic languages of their fallback chains
+     *                           (e.g. de for de-ch) are kept too.
+     * @param fallbackLanguages  languages used when no requested language is available (e.g. en and mul)
+     * @param promotionThreshold number of requests after which a language is kept too, 0 to never promote languages
+     */
+    public LanguagePolicy(Collection<String> allowedLanguages, Collection<String> fallbackLanguages, long promotionThreshold) {
+        Set<String> languages = new HashSet<>(fallbackLanguages);
+        for (String language : allowedLanguages) {
+            languages.addAll(LanguageCodes.getEquivalentCodes(language));
+            for (int end = language.lastIndexOf('-'); end > 0; end = language.lastIndexOf('-', end - 1)) {
+                languages.addAll(LanguageCodes.getEquivalentCodes(language.substring(0, end)));
+            }
+        }
+        baseLanguages = Collections.unmodifiableSet(languages);
+        keptLanguages = baseLanguages;
+        this.promotionThreshold = promotionThreshold;
+    }
+
+    /**
+     * @return the languages kept by the policy configuration, without the promoted ones
+     */
+    public Set<String> getBaseLanguages() {
+        return baseLanguages;
+    }
+
+    /**
+     * @return the languages currently kept. The returned set is not modified by later promotions.
+     */
+    public Set<String> getKeptLanguages() {
+        return keptLanguages;
+    }
+
+    /**
+     * Counts a request for the given languages and promotes the ones requested often enough.
+     */
+    public void recordRequest(Set<String> languages) {
+        if (promotionThreshold <= 0) {
+            return;
+        }
+        for (String language : languages) {
+            //Only the languages Wikidata has terms in are worth promoting
+            if (keptLanguages.contains(language) || !LANGUAGE_CODE_PATTERN.matcher(language).matches() ||
+                    !LanguageCodes.isWikimediaCode(language)) {
+                continue;
+            }
+            LongAdder count = requestCounts.get(language);
+            if (count == null) {
+                if (requestCounts.size() >= MAX_TRACKED_LANGUAGES) {
+                    continue;
+                }
+                count = requestCounts.computeIfAbsent(language, k -> new LongAdder());
+            }
+            count.increment();
+            if (count.sum() >= promotionThreshold) {
+                promote(language);
+            }
+        }
+    }
+
+    /**
+     * @return the languages kept because they have been requested often enough
+     */
+    public Set<String> getPromotedLanguages() {
+        Set<String> promoted = new TreeSet<>(keptLanguages);
+        promoted.removeAll(baseLanguages);
+        return promoted;
+    }
+
+    private synchronized void promote(String language) {
+        if (!keptLanguages.contains(language)) {
+            Set<String> languages = new HashSet<>(keptLanguages);
+            for (String code : LanguageCodes.getEquivalentCodes(language)) {
+                languages.add(code);
+                requestCounts.remove(code);
+            }
+            keptLanguages = Collections.unmodifiableSet(languages);
+        }
+    }
+}
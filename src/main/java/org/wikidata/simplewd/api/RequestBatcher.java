@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Groups the keys requested by concurrent callers during a short time window into batches of a maximal size
+ * so that they are retrieved together by a single call to the batch loader.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RequestBatcher<K, V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestBatcher.class);
+    private static final long MAX_MEASURED_LATENCY_MILLIS = 32768;
+
+    private final AsyncBatchLoader<K, V> batchLoader;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ScheduledExecutorService scheduler;
+    private final List<PendingKey<K, V>> pendingKeys = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong loadedKeyCount = new AtomicLong();
+    private final Histogram batchSizes;
+    private final Histogram batchLatencies = new Histogram(MAX_MEASURED_LATENCY_MILLIS);
+
+    /**
+     * @param maxBatchSize   number of keys after which a batch is sent without waiting for the end of the window
+     * @param window         time during which keys are accumulated before a batch is sent
+     * @param maxConcurrency maximal number of batches loaded at the same time
+     */
+    public RequestBatcher(String name, BatchLoader<K, V> batchLoader, int maxBatchSize, long window, TimeUnit unit, int maxConcurrency) {
+        this(name, toAsyncBatchLoader(batchLoader, Executors.newFixedThreadPool(maxConcurrency,
+                new ThreadFactoryBuilder().setNameFormat(name + "-loader-%d").setDaemon(true).build()
+        )), maxBatchSize, window, unit);
+    }
+
+    /**
+     * @param batchLoader loader that must not block: it is called from the batcher thread or from the requesting threads
+     */
+    public RequestBatcher(String name, AsyncBatchLoader<K, V> batchLoader, int maxBatchSize, long window, TimeUnit unit) {
+        this.batchLoader = batchLoader;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = unit.toNanos(window);
+        batchSizes = new Histogram(maxBatchSize);
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat(name + "-batcher").setDaemon(true).build()
+        );
+    }
+
+    /**
+     * @return the loaded values. Keys without value are not in the returned map.
+     */
+    public Map<K, V> load(Collection<K> keys) throws IOException {
+        return getValue(loadAsync(keys));
+    }
+
+    /**
+     * Same as {@link #load(Collection)} without blocking the calling thread.
+     */
+    public CompletableFuture<Map<K, V>> loadAsync(Collection<K> keys) {
+        Map<K, CompletableFuture<Optional<V>>> futures = new HashMap<>();
+        synchronized (pendingKeys) {
+            for (K key : keys) {
+                if (!futures.containsKey(key)) {
+                    CompletableFuture<Optional<V>> future = new CompletableFuture<>();
+                    futures.put(key, future);
+                    pendingKeys.add(new PendingKey<>(key, future));
+                }
+            }
+            while (pendingKeys.size() >= maxBatchSize) {
+                dispatch(drainBatch());
+            }
+            if (!pendingKeys.isEmpty() && scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<K, V> values = new HashMap<>();
+            futures.forEach((key, future) -> future.join().ifPresent(value -> values.put(key, value)));
+            return values;
+        });
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return the number of keys sent to the batch loader. The keys requested several times in a batch are counted once.
+     */
+    public long getLoadedKeyCount() {
+        return loadedKeyCount.get();
+    }
+
+    /**
+     * @return the number of batches by number of distinct keys
+     */
+    public Map<String, Long> getBatchSizeHistogram() {
+        return batchSizes.getCounts();
+    }
+
+    /**
+     * @return the number of batches by loading time in milliseconds
+     */
+    public Map<String, Long> getBatchLatencyHistogram() {
+        return batchLatencies.getCounts();
+    }
+
+    /**
+     * @return the average ratio between the size of the sent batches and the maximal batch size
+     */
+    public double getAverageFillRate() {
+        long batches = batchCount.get();
+        return (batches == 0) ? 0 : ((double) loadedKeyCount.get()) / (batches * maxBatchSize);
+    }
+
+    private void flush() {
+        synchronized (pendingKeys) {
+            scheduledFlush = null;
+            while (!pendingKeys.isEmpty()) {
+                dispatch(drainBatch());
+            }
+        }
+    }
+
+    private List<PendingKey<K, V>> drainBatch() {
+        List<PendingKey<K, V>> view = pendingKeys.subList(0, Math.min(maxBatchSize, pendingKeys.size()));
+        List<PendingKey<K, V>> batch = new ArrayList<>(view);
+        view.clear();
+        return batch;
+    }
+
+    private void dispatch(List<PendingKey<K, V>> batch) {
+        List<K> keys = batch.stream().map(pendingKey -> pendingKey.key).distinct().collect(Collectors.toList());
+        batchCount.incrementAndGet();
+        loadedKeyCount.addAndGet(keys.size());
+        batchSizes.record(keys.size());
+        long startTime = System.nanoTime();
+        CompletableFuture<Map<K, V>> values;
+        try {
+            values = batchLoader.load(keys);
+        } catch (RuntimeException e) {
+            values = new CompletableFuture<>();
+            values.completeExceptionally(e);
+        }
+        values.whenComplete((loadedValues, e) -> {
+            batchLatencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            if (e == null) {
+                batch.forEach(pendingKey -> pendingKey.future.complete(Optional.ofNullable(loadedValues.get(pendingKey.key))));
+            } else {
+                Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+                LOGGER.warn("Batch loading of " + batch.size() + " keys failed: " + cause.getMessage());
+                batch.forEach(pendingKey -> pendingKey.future.completeExceptionally(cause));
+            }
+        });
+    }
+
+    private static <K, V> AsyncBatchLoader<K, V> toAsyncBatchLoader(BatchLoader<K, V> batchLoader, Executor executor) {
+        return keys -> {
+            CompletableFuture<Map<K, V>> values = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    values.complete(batchLoader.load(keys));
+                } catch (IOException | RuntimeException e) {
+                    values.completeExceptionally(e);
+                }
+            });
+            return values;
+        };
+    }
+
+    private static <T> T getValue(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    public interface BatchLoader<K, V> {
+        Map<K, V> load(List<K> keys) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface AsyncBatchLoader<K, V> {
+        CompletableFuture<Map<K, V>> load(List<K> keys);
+    }
+
+    private static class PendingKey<K, V> {
+        private final K key;
+        private final CompletableFuture<Optional<V>> future;
+
+        private PendingKey(K key, CompletableFuture<Optional<V>> future) {
+            this.key = key;
+            this.future = future;
+        }
+    }
+}
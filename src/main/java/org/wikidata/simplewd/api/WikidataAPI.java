@@ -16,29 +16,60 @@
 
 package org.wikidata.simplewd.api;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.wikidata.simplewd.mapping.ItemMapper;
+import org.wikidata.simplewd.mapping.StreamingItemMapper;
+import org.wikidata.simplewd.mapping.StreamingItemMapper.MappedItem;
 import org.wikidata.simplewd.model.EntityLookup;
-import org.wikidata.simplewd.model.Namespaces;
+import org.wikidata.simplewd.model.ItemIds;
+import org.wikidata.simplewd.model.LocaleFilter;
 import org.wikidata.simplewd.model.value.EntityValue;
-import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
-import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.simplewd.model.value.LocaleStringValue;
+import org.wikidata.simplewd.store.ItemIdFilter;
+import org.wikidata.simplewd.store.LabelStore;
+import org.wikidata.simplewd.store.PersistentEntityCache;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.dumpfiles.DumpProcessingController;
 import org.wikidata.wdtk.wikibaseapi.ApiConnection;
 import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
-import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class WikidataAPI implements EntityLookup {
-    private static final Pattern ITEM_URI_PATTERN = Pattern.compile("^wd:Q\\d+$");
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikidataAPI.class);
+    private static final int MAX_ENTITIES_PER_REQUEST = 50;
+    private static final int MAX_CONCURRENT_REQUESTS = 8;
+    private static final long ENTITY_SOFT_TTL = TimeUnit.DAYS.toMillis(1);
+    private static final long UNKNOWN_REVISION = 0;
+    /**
+     * Threads sending the wbgetentities requests, including the halves of the split batches, and parsing their responses.
+     * They never wait for the type mapping or for the other requests.
+     */
+    private static final ExecutorService REQUEST_EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS,
+            new ThreadFactoryBuilder().setNameFormat("wbgetentities-%d").setDaemon(true).build()
+    );
+    private static final String FULL_ENTITY_PROPS = "info|labels|descriptions|aliases|claims|sitelinks";
+    /**
+     * wbgetentities does not allow to select the statements: the ones that are not in
+     * {@link ItemMapper#SHALLOW_PROPERTIES} are skipped while the response is read
+     */
+    private static final String SHALLOW_ENTITY_PROPS = "labels|descriptions|claims";
+    private static final ApiConnection API_CONNECTION = new ApiConnection("https://www.wikidata.org/w/api.php");
     private static final WikibaseDataFetcher DATA_FETCHER = new WikibaseDataFetcher(
-            new ApiConnection("https://www.wikidata.org/w/api.php"),
+            API_CONNECTION,
             "http://www.wikidata.org/entity/"
     );
 
@@ -47,71 +78,592 @@ public class WikidataAPI implements EntityLookup {
     }
 
     private ItemMapper itemMapper;
-    private Cache<String, EntityValue> entityCache = CacheBuilder.newBuilder()
+    private StreamingItemMapper streamingItemMapper;
+    private Optional<PersistentEntityCache> persistentEntityCache;
+    private Cache<Long, CachedEntity> entityCache = CacheBuilder.newBuilder()
             .maximumSize(65536) //TODO: configure?
             .expireAfterWrite(7, TimeUnit.DAYS)
             .build();
+    private Cache<Long, CachedEntity> shallowEntityCache = CacheBuilder.newBuilder()
+            .maximumSize(65536) //TODO: configure?
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+    private Cache<Long, EntityValue> unprunedEntityCache = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+    private Set<Long> entitiesInRefresh = ConcurrentHashMap.newKeySet();
+    private Optional<ItemIdFilter> itemIdFilter;
+    private Cache<Long, Boolean> missingEntityCache;
+    private ConcurrentMap<Long, CompletableFuture<Optional<EntityValue>>> entitiesInLoading = new ConcurrentHashMap<>();
+    private RequestBatcher<Long, CachedEntity> entityBatcher;
+    private Optional<LanguagePolicy> languagePolicy;
+    private Optional<LabelStore> labelStore;
+    private AtomicLong unprunedEntityLoadCount = new AtomicLong();
 
     public WikidataAPI() throws IOException {
-        itemMapper = new ItemMapper((new DumpProcessingController("wikidatawiki")).getSitesInformation());
+        this(Optional.empty(), Optional.empty(), 5, 24 * 60, 0, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * @param persistentEntityCache    second level cache checked before calling the Wikidata API
+     * @param itemIdFilter             filter of the items of the dump used to skip the lookups in the local stores
+     * @param batchWindowMillis        time during which entities requested concurrently are grouped into one API call
+     * @param missingEntityTtlMinutes  time during which an entity found missing is not requested again
+     * @param parallelMappingThreshold number of statements from which an item is mapped in parallel, 0 to disable
+     * @param languagePolicy           languages of the terms kept in the cached entities, all languages are kept if empty
+     * @param labelStore               store of the names and descriptions used to display the referenced entities.
+     *                                 It is updated with the entities retrieved with all their languages.
+     */
+    public WikidataAPI(
+            Optional<PersistentEntityCache> persistentEntityCache, Optional<ItemIdFilter> itemIdFilter,
+            long batchWindowMillis, long missingEntityTtlMinutes, int parallelMappingThreshold,
+            Optional<LanguagePolicy> languagePolicy, Optional<LabelStore> labelStore
+    ) throws IOException {
+        itemMapper = new ItemMapper(
+                (new DumpProcessingController("wikidatawiki")).getSitesInformation(), parallelMappingThreshold
+        );
+        streamingItemMapper = new StreamingItemMapper(itemMapper);
+        this.persistentEntityCache = persistentEntityCache;
+        this.itemIdFilter = itemIdFilter;
+        this.languagePolicy = languagePolicy;
+        this.labelStore = labelStore;
+        missingEntityCache = CacheBuilder.newBuilder()
+                .maximumSize(65536) //TODO: configure?
+                .expireAfterWrite(missingEntityTtlMinutes, TimeUnit.MINUTES)
+                .build();
+        entityBatcher = new RequestBatcher<>("wbgetentities", this::retrieveEntitiesAsync,
+                MAX_ENTITIES_PER_REQUEST, batchWindowMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Returns the entities with only their labels and descriptions in the languages used by the locale filter,
+     * their types and their image. The full entities are returned instead if they are already cached.
+     * <p>
+     * The shallow entities are retrieved and cached with the languages kept by the language policy, so that there is
+     * at most one cached shallow entity by item. The ones requested in other languages are not cached.
+     */
+    @Override
+    public Map<Long, EntityValue> getShallowEntities(LocaleFilter localeFilter, long... itemNumbers) throws IOException {
+        Optional<Set<String>> languageCodes = localeFilter.getLanguageCodes();
+        Set<String> keptLanguages = languagePolicy.map(LanguagePolicy::getKeptLanguages).orElse(null);
+        boolean isCacheable = keptLanguages == null || languageCodes.map(keptLanguages::containsAll).orElse(false);
+        Map<Long, EntityValue> entities = new HashMap<>();
+        List<Long> itemsToRetrieve = new ArrayList<>();
+        for (long itemNumber : itemNumbers) {
+            if (!mightExist(itemNumber)) {
+                continue;
+            }
+
+            CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+            CachedEntity shallowEntity = isCacheable ? shallowEntityCache.getIfPresent(itemNumber) : null;
+            if (cachedEntity != null && languageCodes.map(codes -> hasLanguages(cachedEntity, codes)).orElse(true)) {
+                entities.put(itemNumber, cachedEntity.entity);
+            } else if (shallowEntity != null && languageCodes.map(codes -> hasLanguages(shallowEntity, codes)).orElse(shallowEntity.languages == null)) {
+                entities.put(itemNumber, shallowEntity.entity);
+            } else if (!itemsToRetrieve.contains(itemNumber)) {
+                itemsToRetrieve.add(itemNumber);
+            }
+        }
+        if (itemsToRetrieve.isEmpty()) {
+            return entities;
+        }
+
+        DocumentDataFilter filter = new DocumentDataFilter();
+        Set<String> retrievedLanguages = isCacheable ? keptLanguages : languageCodes.orElse(null);
+        if (retrievedLanguages != null) {
+            filter.setLanguageFilter(retrievedLanguages);
+        }
+        filter.setPropertyFilter(ItemMapper.SHALLOW_PROPERTIES);
+        filter.setSiteLinkFilter(Collections.emptySet());
+        retrieveItems(SHALLOW_ENTITY_PROPS, filter, itemsToRetrieve, MappedItem::getEntity).forEach((itemNumber, entity) -> {
+            entities.put(itemNumber, entity);
+            if (isCacheable) {
+                shallowEntityCache.put(itemNumber, new CachedEntity(entity, UNKNOWN_REVISION, retrievedLanguages));
+            }
+        });
+        return entities;
     }
 
     @Override
-    public Map<String, EntityValue> getEntitiesForIRI(String... ids) throws IOException {
-        Map<String, EntityValue> entities = new HashMap<>();
-        List<String> idsToRetrieve = new ArrayList<>();
-        for (String inputId : ids) {
-            String id = Namespaces.reduce(inputId);
-            if (!ITEM_URI_PATTERN.matcher(id).matches()) {
-                throw new IllegalArgumentException("This entity IRI is not supported: " + Namespaces.expand(id));
+    public Map<Long, EntityValue> getEntities(long... itemNumbers) throws IOException {
+        Map<Long, EntityValue> entities = new HashMap<>();
+        Map<Long, CompletableFuture<Optional<EntityValue>>> loadedByUs = new HashMap<>();
+        Map<Long, CompletableFuture<Optional<EntityValue>>> loadedByOthers = new HashMap<>();
+        List<Long> staleItems = new ArrayList<>();
+        for (long itemNumber : itemNumbers) {
+            if (!mightExist(itemNumber)) {
+                continue;
             }
 
             //TODO: JDK 9+: cleanup with ifPresentOrElse
-            Optional<EntityValue> entityOptional = Optional.ofNullable(entityCache.getIfPresent(id));
+            Optional<EntityValue> entityOptional = getCachedEntity(itemNumber, staleItems);
             if (entityOptional.isPresent()) {
-                entityOptional.ifPresent(entity -> entities.put(id, entity));
-            } else {
-                idsToRetrieve.add(id);
+                entityOptional.ifPresent(entity -> entities.put(itemNumber, entity));
+            } else if (!loadedByUs.containsKey(itemNumber)) {
+                //Only one request at a time should retrieve a given entity
+                CompletableFuture<Optional<EntityValue>> future = new CompletableFuture<>();
+                CompletableFuture<Optional<EntityValue>> otherFuture = entitiesInLoading.putIfAbsent(itemNumber, future);
+                if (otherFuture != null) {
+                    loadedByOthers.put(itemNumber, otherFuture);
+                } else {
+                    loadedByUs.put(itemNumber, future);
+                }
             }
         }
 
-        retrieveEntitiesForIRI(idsToRetrieve).forEach((id, entity) -> {
-            entities.put(id, entity);
-            entityCache.put(id, entity);
-        });
+        refreshEntities(staleItems);
+
+        if (!loadedByUs.isEmpty()) {
+            try {
+                //The entity may have been loaded between the cache lookup and the registration of the future
+                List<Long> itemsToRetrieve = new ArrayList<>();
+                loadedByUs.forEach((itemNumber, future) -> {
+                    CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+                    if (cachedEntity != null) {
+                        future.complete(Optional.of(cachedEntity.entity));
+                    } else {
+                        itemsToRetrieve.add(itemNumber);
+                    }
+                });
+
+                Map<Long, CachedEntity> retrievedEntities = itemsToRetrieve.isEmpty()
+                        ? Collections.emptyMap()
+                        : entityBatcher.load(itemsToRetrieve);
+                retrievedEntities.forEach(this::cacheEntity);
+                loadedByUs.forEach((itemNumber, future) ->
+                        future.complete(Optional.ofNullable(retrievedEntities.get(itemNumber)).map(entity -> entity.entity))
+                );
+            } catch (IOException | RuntimeException e) {
+                loadedByUs.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                loadedByUs.forEach(entitiesInLoading::remove);
+            }
+        }
 
+        for (Map.Entry<Long, CompletableFuture<Optional<EntityValue>>> entry : loadedByUs.entrySet()) {
+            getValue(entry.getValue()).ifPresent(entity -> entities.put(entry.getKey(), entity));
+        }
+        for (Map.Entry<Long, CompletableFuture<Optional<EntityValue>>> entry : loadedByOthers.entrySet()) {
+            getValue(entry.getValue()).ifPresent(entity -> entities.put(entry.getKey(), entity));
+        }
         return entities;
     }
 
-    private Map<String, EntityValue> retrieveEntitiesForIRI(List<String> ids) throws IOException {
-        try {
-            Map<String, EntityDocument> documents = DATA_FETCHER.getEntityDocuments(
-                    ids.stream().map(id -> id.replace("wd:", "")).toArray(String[]::new)
-            );
-
-            Map<String, EntityValue> entities = new HashMap<>();
-            for (Map.Entry<String, EntityDocument> entry : documents.entrySet()) {
-                EntityDocument document = entry.getValue();
-                if (document instanceof ItemDocument) {
-                    entities.put("wd:" + entry.getKey(), itemMapper.map((ItemDocument) document));
-                } else if (document != null) {
-                    throw new IOException("It seems to not be the IRI of an item: http://www.wikidata.org/entity/" + entry.getKey());
+    /**
+     * If the entity has been cached without some languages of the locale filter, it is retrieved again with all its
+     * languages. It is also the case if the locale filter accepts all languages (e.g. for the RDF formats).
+     * The languages that are often requested are promoted by the language policy.
+     */
+    @Override
+    public Optional<EntityValue> getEntity(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        Optional<EntityValue> entity = getEntity(itemNumber);
+        if (!entity.isPresent() || !languagePolicy.isPresent()) {
+            return entity;
+        }
+        Optional<Set<String>> languageCodes = localeFilter.getLanguageCodes();
+        CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+        if (!languageCodes.isPresent()) {
+            if (cachedEntity != null && cachedEntity.languages == null) {
+                return entity;
+            }
+        } else {
+            languagePolicy.get().recordRequest(languageCodes.get());
+            if (hasLanguages(cachedEntity, languageCodes.get())) {
+                return entity;
+            }
+            if (languagePolicy.get().getKeptLanguages().containsAll(languageCodes.get())) {
+                //The languages have been promoted since the entity has been cached
+                CachedEntity reloadedEntity = entityBatcher.load(Collections.singletonList(itemNumber)).get(itemNumber);
+                if (reloadedEntity == null) {
+                    return entity;
                 }
+                cacheEntity(itemNumber, reloadedEntity);
+                return Optional.of(reloadedEntity.entity);
             }
-            return entities;
-        } catch (NoSuchEntityErrorException e) {
-            //An entity does not exists, we get entities one by one if there are more than 1
-            if (ids.size() > 1) {
-                Map<String, EntityValue> result = new HashMap<>();
-                for (String id : ids) {
-                    retrieveEntitiesForIRI(Collections.singletonList(id)).forEach(result::put);
+        }
+
+        EntityValue unprunedEntity = unprunedEntityCache.getIfPresent(itemNumber);
+        if (unprunedEntity == null) {
+            unprunedEntityLoadCount.incrementAndGet();
+            unprunedEntity = retrieveItems(
+                    FULL_ENTITY_PROPS, new DocumentDataFilter(), Collections.singletonList(itemNumber), MappedItem::getEntity
+            ).get(itemNumber);
+            if (unprunedEntity == null) {
+                return entity;
+            }
+            unprunedEntityCache.put(itemNumber, unprunedEntity);
+        }
+        return Optional.of(unprunedEntity);
+    }
+
+    @Override
+    public Stream<LocaleStringValue> getBestLabels(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        if (hasStoredLabels(itemNumber)) {
+            return localeFilter.getBestValues(labelStore.get().getLabels(itemNumber, localeFilter));
+        }
+        return EntityLookup.super.getBestLabels(localeFilter, itemNumber);
+    }
+
+    @Override
+    public Stream<LocaleStringValue> getBestDescriptions(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        if (hasStoredLabels(itemNumber)) {
+            return localeFilter.getBestValues(labelStore.get().getDescriptions(itemNumber, localeFilter));
+        }
+        return EntityLookup.super.getBestDescriptions(localeFilter, itemNumber);
+    }
+
+    /**
+     * @return if the label store contains the item
+     */
+    private boolean hasStoredLabels(long itemNumber) {
+        return labelStore.isPresent() && itemNumber != ItemIds.NOT_AN_ITEM && mightBeStored(itemNumber) &&
+                labelStore.get().contains(itemNumber);
+    }
+
+    /**
+     * Evicts an entity from the caches after it has been changed
+     */
+    public void invalidate(long itemNumber) {
+        invalidateEntity(itemNumber);
+        missingEntityCache.invalidate(itemNumber);
+    }
+
+    /**
+     * Writes to disk the pending changes of the persistent caches, including the invalidations
+     */
+    public void flush() {
+        persistentEntityCache.ifPresent(PersistentEntityCache::flush);
+        labelStore.ifPresent(LabelStore::flush);
+    }
+
+    /**
+     * @return statistics about the batching of the calls to the Wikidata API
+     */
+    public Map<String, Object> getBatchingMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        metrics.put("batches", entityBatcher.getBatchCount());
+        metrics.put("entities", entityBatcher.getLoadedKeyCount());
+        metrics.put("fillRate", entityBatcher.getAverageFillRate());
+        metrics.put("batchSizes", entityBatcher.getBatchSizeHistogram());
+        metrics.put("batchLatencyMillis", entityBatcher.getBatchLatencyHistogram());
+        return metrics;
+    }
+
+    /**
+     * @return the languages kept by the language policy and the number of entities retrieved again with all their languages
+     */
+    public Map<String, Object> getLanguagePolicyMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        languagePolicy.ifPresent(policy -> {
+            metrics.put("keptLanguages", new TreeSet<>(policy.getKeptLanguages()));
+            metrics.put("promotedLanguages", policy.getPromotedLanguages());
+            metrics.put("unprunedEntityLoads", unprunedEntityLoadCount.get());
+        });
+        return metrics;
+    }
+
+    /**
+     * @return the number of Wikidata values that could not be mapped, by property id and rejection reason
+     */
+    public Map<String, Map<String, Long>> getMappingRejections() {
+        return itemMapper.getRejectionCounts();
+    }
+
+    private boolean mightExist(long itemNumber) {
+        return itemNumber != ItemIds.NOT_AN_ITEM && missingEntityCache.getIfPresent(itemNumber) == null;
+    }
+
+    /**
+     * @return false if the item is not in the persistent cache and the label store for sure.
+     * The item id filter is built from a dump without the redirects: the items it rejects are still requested from
+     * the API and only end up in the negative cache if they are missing there too.
+     */
+    private boolean mightBeStored(long itemNumber) {
+        return itemIdFilter.map(filter -> filter.mightExist(itemNumber)).orElse(true);
+    }
+
+    /**
+     * @return if the cached entity contains its terms in the given languages.
+     * The entities not in the cache are considered as pruned to the languages of the policy configuration.
+     */
+    private boolean hasLanguages(CachedEntity cachedEntity, Set<String> languageCodes) {
+        Set<String> languages = (cachedEntity != null)
+                ? cachedEntity.languages
+                : languagePolicy.map(LanguagePolicy::getBaseLanguages).orElse(null);
+        return languages == null || languages.containsAll(languageCodes);
+    }
+
+    private Optional<EntityValue> getCachedEntity(long itemNumber, List<Long> staleItems) {
+        CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+        if (cachedEntity != null) {
+            if (cachedEntity.loadTime + ENTITY_SOFT_TTL < System.currentTimeMillis()) {
+                staleItems.add(itemNumber);
+            }
+            return Optional.of(cachedEntity.entity);
+        }
+        if (!mightBeStored(itemNumber)) {
+            return Optional.empty();
+        }
+        Optional<PersistentEntityCache.Entry> entry = persistentEntityCache.flatMap(cache -> cache.get(itemNumber));
+        entry.ifPresent(value -> {
+            if (value.getWriteTime() + ENTITY_SOFT_TTL < System.currentTimeMillis()) {
+                staleItems.add(itemNumber);
+            }
+            entityCache.put(itemNumber, new CachedEntity(
+                    value.getEntity(), value.getRevisionId(), value.getLanguages(), value.getWriteTime()
+            ));
+        });
+        return entry.map(PersistentEntityCache.Entry::getEntity);
+    }
+
+    private void cacheEntity(long itemNumber, CachedEntity entity) {
+        entityCache.put(itemNumber, entity);
+        persistentEntityCache.ifPresent(cache -> {
+            cache.put(itemNumber, entity.entity, entity.revisionId, entity.languages);
+            if (cache.needsCompaction()) {
+                CacheRefresher.submit(() -> compactPersistentEntityCache(cache));
+            }
+        });
+        if (entity.languages == null) {
+            labelStore.ifPresent(store -> {
+                try {
+                    store.put(itemNumber, entity.entity);
+                } catch (IOException e) {
+                    LOGGER.warn("Storage of the labels of " + ItemIds.toId(itemNumber) + " failed: " + e.getMessage());
+                }
+                if (store.needsCompaction()) {
+                    CacheRefresher.submit(() -> compactLabelStore(store));
+                }
+            });
+        }
+    }
+
+    private static void compactLabelStore(LabelStore store) {
+        try {
+            store.compact();
+        } catch (IOException e) {
+            LOGGER.warn("Compaction of the label store failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void compactPersistentEntityCache(PersistentEntityCache cache) {
+        try {
+            cache.compact();
+        } catch (IOException e) {
+            LOGGER.warn("Compaction of the persistent entity cache failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void invalidateEntity(long itemNumber) {
+        entityCache.invalidate(itemNumber);
+        shallowEntityCache.invalidate(itemNumber);
+        unprunedEntityCache.invalidate(itemNumber);
+        persistentEntityCache.ifPresent(cache -> cache.invalidate(itemNumber));
+        labelStore.ifPresent(store -> {
+            try {
+                store.remove(itemNumber);
+            } catch (IOException e) {
+                LOGGER.warn("Removal of the labels of " + ItemIds.toId(itemNumber) + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reloads in the background the entities older than the soft TTL. They are served from the cache in the meantime.
+     * <p>
+     * The entities with a known revision are only downloaded and mapped again if their latest revision has changed.
+     */
+    private void refreshEntities(List<Long> staleItems) {
+        List<Long> itemsToRefresh = new ArrayList<>();
+        for (long itemNumber : staleItems) {
+            if (entitiesInRefresh.add(itemNumber)) {
+                itemsToRefresh.add(itemNumber);
+            }
+        }
+        if (itemsToRefresh.isEmpty()) {
+            return;
+        }
+        boolean isSubmitted = CacheRefresher.submit(() -> {
+            try {
+                List<Long> itemsToReload = new ArrayList<>();
+                List<Long> itemsToCheck = new ArrayList<>();
+                for (long itemNumber : itemsToRefresh) {
+                    CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+                    if (cachedEntity == null || cachedEntity.revisionId == UNKNOWN_REVISION) {
+                        itemsToReload.add(itemNumber);
+                    } else {
+                        itemsToCheck.add(itemNumber);
+                    }
+                }
+
+                Map<Long, Long> latestRevisionIds = getLatestRevisionIds(itemsToCheck);
+                for (long itemNumber : itemsToCheck) {
+                    CachedEntity cachedEntity = entityCache.getIfPresent(itemNumber);
+                    Long latestRevisionId = latestRevisionIds.get(itemNumber);
+                    if (latestRevisionId == null) {
+                        invalidateEntity(itemNumber);
+                        missingEntityCache.put(itemNumber, true);
+                    } else if (cachedEntity != null && cachedEntity.revisionId == latestRevisionId) {
+                        //Not changed: the entity is kept as is for a new soft TTL
+                        entityCache.put(itemNumber, new CachedEntity(cachedEntity.entity, cachedEntity.revisionId, cachedEntity.languages));
+                    } else {
+                        itemsToReload.add(itemNumber);
+                    }
+                }
+
+                Map<Long, CachedEntity> entities = entityBatcher.load(itemsToReload);
+                for (long itemNumber : itemsToReload) {
+                    CachedEntity entity = entities.get(itemNumber);
+                    if (entity != null) {
+                        cacheEntity(itemNumber, entity);
+                    } else {
+                        invalidateEntity(itemNumber);
+                    }
                 }
-                return result;
-            } else {
-                return Collections.emptyMap();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("The refresh of " + itemsToRefresh.size() + " entities failed: " + e.getMessage());
+            } finally {
+                entitiesInRefresh.removeAll(itemsToRefresh);
             }
-        } catch (MediaWikiApiErrorException e) {
+        });
+        if (!isSubmitted) {
+            entitiesInRefresh.removeAll(itemsToRefresh);
+        }
+    }
+
+    private static <T> T getValue(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static String joinIds(List<Long> itemNumbers) {
+        return itemNumbers.stream().map(ItemIds::toId).collect(Collectors.joining("|"));
+    }
+
+    /**
+     * @return the latest revision id of the existing items
+     */
+    private static Map<Long, Long> getLatestRevisionIds(List<Long> itemNumbers) throws IOException {
+        Map<Long, Long> revisionIds = new HashMap<>();
+        for (int start = 0; start < itemNumbers.size(); start += MAX_ENTITIES_PER_REQUEST) {
+            List<Long> batch = itemNumbers.subList(start, Math.min(start + MAX_ENTITIES_PER_REQUEST, itemNumbers.size()));
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put("action", "query");
+            parameters.put("prop", "info");
+            parameters.put("format", "json");
+            parameters.put("titles", joinIds(batch));
+            try {
+                JsonNode pages = API_CONNECTION.sendJsonRequest("POST", parameters).path("query").path("pages");
+                for (JsonNode page : pages) {
+                    long itemNumber = ItemIds.fromId(page.path("title").asText());
+                    if (itemNumber != ItemIds.NOT_AN_ITEM && page.has("lastrevid") && !page.has("missing")) {
+                        revisionIds.put(itemNumber, page.get("lastrevid").asLong());
+                    }
+                }
+            } catch (MediaWikiApiErrorException e) {
+                throw new IOException(e);
+            }
+        }
+        return revisionIds;
+    }
+
+    private CompletableFuture<Map<Long, CachedEntity>> retrieveEntitiesAsync(List<Long> itemNumbers) {
+        DocumentDataFilter filter = new DocumentDataFilter();
+        Set<String> languages = languagePolicy.map(LanguagePolicy::getKeptLanguages).orElse(null);
+        if (languages != null) {
+            filter.setLanguageFilter(languages);
+        }
+        return retrieveItemsAsync(FULL_ENTITY_PROPS, filter, itemNumbers, item ->
+                new CachedEntity(item.getEntity(), item.getRevisionId(), languages)
+        );
+    }
+
+    private <T> Map<Long, T> retrieveItems(String props, DocumentDataFilter filter, List<Long> itemNumbers, Function<MappedItem, T> mapper) throws IOException {
+        return getValue(retrieveItemsAsync(props, filter, itemNumbers, mapper));
+    }
+
+    /**
+     * Retrieves the items with wbgetentities and maps them while the response is read.
+     * The requests, including the ones of the batches split to isolate the missing items, are sent by the bounded
+     * request executor. The returned future is completed once the types of the classes of the items are resolved.
+     *
+     * @param props  the wbgetentities props parameter
+     * @param filter the languages, properties and site links to map
+     */
+    private <T> CompletableFuture<Map<Long, T>> retrieveItemsAsync(
+            String props, DocumentDataFilter filter, List<Long> itemNumbers, Function<MappedItem, T> mapper
+    ) {
+        BisectingBatchLoader<Long, T> loader = new BisectingBatchLoader<>(
+                batch -> requestItems(props, filter, batch, mapper), REQUEST_EXECUTOR
+        );
+        return loader.load(itemNumbers).thenApply(entities -> {
+            //The entities marked as missing are not returned by the mapper and the bisection
+            for (long itemNumber : itemNumbers) {
+                if (!entities.containsKey(itemNumber)) {
+                    missingEntityCache.put(itemNumber, true);
+                }
+            }
+            return entities;
+        });
+    }
+
+    private <T> CompletableFuture<Map<Long, T>> requestItems(
+            String props, DocumentDataFilter filter, List<Long> itemNumbers, Function<MappedItem, T> mapper
+    ) throws IOException, MediaWikiApiErrorException {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("action", "wbgetentities");
+        parameters.put("format", "json");
+        parameters.put("props", props);
+        parameters.put("ids", joinIds(itemNumbers));
+        if (filter.getLanguageFilter() != null && !filter.getLanguageFilter().isEmpty()) {
+            parameters.put("languages", String.join("|", filter.getLanguageFilter()));
+        }
+        try (InputStream response = API_CONNECTION.sendRequest("POST", parameters)) {
+            return streamingItemMapper.mapEntities(response, filter).thenApply(items -> {
+                Map<Long, T> entities = new HashMap<>();
+                items.forEach((id, item) -> {
+                    long itemNumber = ItemIds.fromId(id);
+                    if (itemNumber != ItemIds.NOT_AN_ITEM) {
+                        entities.put(itemNumber, mapper.apply(item));
+                    }
+                });
+                return entities;
+            });
+        }
+    }
+
+    private static class CachedEntity {
+        private final EntityValue entity;
+        private final long revisionId;
+        private final long loadTime;
+        /**
+         * Languages of the terms kept by the language policy, null if all the languages are kept
+         */
+        private final Set<String> languages;
+
+        private CachedEntity(EntityValue entity, long revisionId, Set<String> languages) {
+            this(entity, revisionId, languages, System.currentTimeMillis());
+        }
+
+        private CachedEntity(EntityValue entity, long revisionId, Set<String> languages, long loadTime) {
+            this.entity = entity;
+            this.revisionId = revisionId;
+            this.loadTime = loadTime;
+            this.languages = languages;
         }
     }
 }
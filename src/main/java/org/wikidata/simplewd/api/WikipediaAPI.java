@@ -47,16 +47,17 @@ public class WikipediaAPI {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WikipediaAPI.class);
     private static final ObjectMapper MAPPER = new ObjectMapper();
-    private static final EntityIdValue WIKIPEDIA_LICENSE = new EntityIdValue("wd:Q14946043");
+    private static final EntityIdValue WIKIPEDIA_LICENSE = EntityIdValue.of("wd:Q14946043");
     private LoadingCache<String, Summary> summaryCache = CacheBuilder.newBuilder()
             .maximumSize(16384) //TODO: configure?
             .expireAfterWrite(1, TimeUnit.DAYS)
-            .build(new CacheLoader<String, Summary>() {
+            .refreshAfterWrite(1, TimeUnit.HOURS)
+            .build(CacheRefresher.reloadingAsynchronously(new CacheLoader<String, Summary>() {
                 @Override
                 public Summary load(String pageIRI) throws IOException {
                     return buildSummary(pageIRI);
                 }
-            });
+            }));
 
     public WikipediaAPI() {
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.changes;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.simplewd.api.WikidataAPI;
+import org.wikidata.simplewd.mapping.statement.TypeMapper;
+import org.wikidata.simplewd.model.ItemIds;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes an {@link EntityChangeSource} in a background thread and evicts the changed entities from the caches.
+ * <p>
+ * The type mapping caches are also cleared when the subclass of (P279) statements of a class might have changed.
+ * The offset of the last applied change is saved in the checkpoint file, if any, to resume from it after a restart.
+ */
+public class CacheInvalidator implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheInvalidator.class);
+    private static final String SUBCLASS_OF_PROPERTY = "P279";
+
+    private final EntityChangeSource changeSource;
+    private final WikidataAPI wikidataAPI;
+    private final Optional<Path> checkpointFile;
+    private final long pollIntervalMillis;
+
+    public CacheInvalidator(EntityChangeSource changeSource, WikidataAPI wikidataAPI, Optional<Path> checkpointFile, long pollInterval, TimeUnit unit) {
+        this.changeSource = changeSource;
+        this.wikidataAPI = wikidataAPI;
+        this.checkpointFile = checkpointFile;
+        this.pollIntervalMillis = unit.toMillis(pollInterval);
+    }
+
+    public void start() {
+        Thread thread = new Thread(this, "cache-invalidator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Optional<String> offset = Optional.empty();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (!offset.isPresent()) {
+                    offset = Optional.of(readCheckpoint().orElse(changeSource.getInitialOffset()));
+                }
+                List<EntityChange> changes = changeSource.poll(offset.get());
+                for (EntityChange change : changes) {
+                    apply(change);
+                }
+                if (changes.isEmpty()) {
+                    Thread.sleep(pollIntervalMillis);
+                } else {
+                    offset = Optional.of(changes.get(changes.size() - 1).getOffset());
+                    //The invalidations should be on disk before the checkpoint moves past them
+                    wikidataAPI.flush();
+                    writeCheckpoint(offset.get());
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to process the entity changes: " + e.getMessage(), e);
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void apply(EntityChange change) {
+        long itemNumber = ItemIds.fromIRI(change.getEntityId());
+        if (itemNumber == ItemIds.NOT_AN_ITEM) {
+            return;
+        }
+        wikidataAPI.invalidate(itemNumber);
+        if (change.mightChangeProperty(SUBCLASS_OF_PROPERTY)) {
+            TypeMapper.getInstance().invalidateClass(itemNumber);
+        }
+    }
+
+    private Optional<String> readCheckpoint() throws IOException {
+        if (!checkpointFile.isPresent() || !Files.exists(checkpointFile.get())) {
+            return Optional.empty();
+        }
+        String offset = new String(Files.readAllBytes(checkpointFile.get()), StandardCharsets.UTF_8).trim();
+        return offset.isEmpty() ? Optional.empty() : Optional.of(offset);
+    }
+
+    private void writeCheckpoint(String offset) throws IOException {
+        if (checkpointFile.isPresent()) {
+            Path temporaryFile = checkpointFile.get().resolveSibling(checkpointFile.get().getFileName() + ".tmp");
+            Files.write(temporaryFile, offset.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, checkpointFile.get(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.changes;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * A change of a Wikidata entity read from an {@link EntityChangeSource}.
+ */
+public class EntityChange {
+
+    private final String entityId;
+    private final String offset;
+    private final Optional<Set<String>> changedProperties;
+
+    /**
+     * @param entityId          reduced IRI of the changed entity (e.g. wd:Q42)
+     * @param offset            position of the change in its source, used to resume after it
+     * @param changedProperties ids of the properties whose statements changed, if known
+     */
+    public EntityChange(String entityId, String offset, Optional<Set<String>> changedProperties) {
+        this.entityId = entityId;
+        this.offset = offset;
+        this.changedProperties = changedProperties;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public String getOffset() {
+        return offset;
+    }
+
+    public Optional<Set<String>> getChangedProperties() {
+        return changedProperties;
+    }
+
+    /**
+     * @return if the statements of the given property might have changed
+     */
+    public boolean mightChangeProperty(String propertyId) {
+        return changedProperties.map(properties -> properties.contains(propertyId)).orElse(true);
+    }
+
+    @Override
+    public String toString() {
+        return entityId + "@" + offset;
+    }
+}
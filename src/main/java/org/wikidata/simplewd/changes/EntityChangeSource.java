@@ -14,18 +14,24 @@
  * limitations under the License.
  */
 
-package org.wikidata.simplewd.mapping.statement;
+package org.wikidata.simplewd.changes;
+
+import java.io.IOException;
+import java.util.List;
 
 /**
- * @author Thomas Pellissier Tanon
+ * Ordered stream of entity changes.
  */
-public class InvalidWikibaseValueException extends Exception {
+public interface EntityChangeSource {
 
-    InvalidWikibaseValueException(String message) {
-        super(message);
-    }
+    /**
+     * @return the offset to start from if there is no checkpoint
+     */
+    String getInitialOffset() throws IOException;
 
-    InvalidWikibaseValueException(String message, Throwable cause) {
-        super(message, cause);
-    }
+    /**
+     * @param lastOffset offset of the last change already consumed
+     * @return the next changes in order. Empty if there is no new change yet.
+     */
+    List<EntityChange> poll(String lastOffset) throws IOException;
 }
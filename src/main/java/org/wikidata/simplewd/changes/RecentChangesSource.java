@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.changes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the changes of the Wikidata items from the recent changes API.
+ * <p>
+ * Offsets are of the form "timestamp|rcid". The modified properties are extracted from the edit summaries.
+ */
+public class RecentChangesSource implements EntityChangeSource {
+
+    private static final Pattern ITEM_TITLE_PATTERN = Pattern.compile("^Q\\d+$");
+    private static final Pattern PROPERTY_LINK_PATTERN = Pattern.compile("\\[\\[Property:(P\\d+)(?:\\|[^]]*)?]]");
+    private static final Pattern TERMS_ONLY_SUMMARY_PATTERN = Pattern.compile("^/\\* wb(?:setlabel|setdescription|setaliases|setsitelink|linktitles)");
+    private static final int MAX_CHANGES_PER_REQUEST = 500;
+
+    private final ApiConnection apiConnection;
+
+    public RecentChangesSource(ApiConnection apiConnection) {
+        this.apiConnection = apiConnection;
+    }
+
+    @Override
+    public String getInitialOffset() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS).toString() + "|0";
+    }
+
+    @Override
+    public List<EntityChange> poll(String lastOffset) throws IOException {
+        String[] offsetParts = lastOffset.split("\\|", 2);
+        if (offsetParts.length != 2) {
+            throw new IOException("Invalid recent changes offset: " + lastOffset);
+        }
+        long lastChangeId = Long.parseLong(offsetParts[1]);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("action", "query");
+        parameters.put("format", "json");
+        parameters.put("list", "recentchanges");
+        parameters.put("rcnamespace", "0");
+        parameters.put("rctype", "edit|new|log");
+        parameters.put("rcprop", "title|ids|timestamp|comment");
+        parameters.put("rcdir", "newer");
+        parameters.put("rcstart", offsetParts[0]);
+        parameters.put("rclimit", Integer.toString(MAX_CHANGES_PER_REQUEST));
+        JsonNode changes;
+        try {
+            changes = apiConnection.sendJsonRequest("GET", parameters).path("query").path("recentchanges");
+        } catch (MediaWikiApiErrorException e) {
+            throw new IOException(e);
+        }
+
+        List<EntityChange> entityChanges = new ArrayList<>();
+        for (JsonNode change : changes) {
+            long changeId = change.path("rcid").asLong();
+            String title = change.path("title").asText();
+            if (changeId <= lastChangeId || !ITEM_TITLE_PATTERN.matcher(title).matches()) {
+                continue;
+            }
+            entityChanges.add(new EntityChange(
+                    "wd:" + title,
+                    change.path("timestamp").asText() + "|" + changeId,
+                    getChangedProperties(change.path("comment").asText(""))
+            ));
+        }
+        return entityChanges;
+    }
+
+    private static Optional<Set<String>> getChangedProperties(String summary) {
+        Set<String> properties = new HashSet<>();
+        Matcher matcher = PROPERTY_LINK_PATTERN.matcher(summary);
+        while (matcher.find()) {
+            properties.add(matcher.group(1));
+        }
+        if (!properties.isEmpty() || TERMS_ONLY_SUMMARY_PATTERN.matcher(summary).find()) {
+            return Optional.of(properties);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.changes;
+
+import org.wikidata.simplewd.model.Namespaces;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Replays entity changes written one per line in a file or sent by a socket server.
+ * <p>
+ * Each line contains an entity id optionally followed by a tab and the comma separated list of the properties
+ * whose statements changed (e.g. "Q42\tP31,P279"). Without the tab the changed properties are unknown.
+ * Offsets are the number of lines read since the beginning of the file or of the socket stream.
+ */
+public class ReplayChangeSource implements EntityChangeSource {
+
+    private static final int MAX_CHANGES_PER_POLL = 1000;
+
+    private final Optional<Path> file;
+    private final Optional<String> host;
+    private final int port;
+    private BufferedReader reader;
+    private long lineCount = 0;
+
+    private ReplayChangeSource(Optional<Path> file, Optional<String> host, int port) {
+        this.file = file;
+        this.host = host;
+        this.port = port;
+    }
+
+    public static ReplayChangeSource fromFile(Path file) {
+        return new ReplayChangeSource(Optional.of(file), Optional.empty(), 0);
+    }
+
+    public static ReplayChangeSource fromSocket(String host, int port) {
+        return new ReplayChangeSource(Optional.empty(), Optional.of(host), port);
+    }
+
+    @Override
+    public String getInitialOffset() {
+        return "0";
+    }
+
+    @Override
+    public synchronized List<EntityChange> poll(String lastOffset) throws IOException {
+        long offset = Long.parseLong(lastOffset);
+        if (reader == null || offset < lineCount) {
+            open();
+        }
+        try {
+            while (lineCount < offset && reader.readLine() != null) {
+                lineCount++;
+            }
+            List<EntityChange> changes = new ArrayList<>();
+            while (changes.size() < MAX_CHANGES_PER_POLL && reader.ready()) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineCount++;
+                if (!line.trim().isEmpty()) {
+                    changes.add(parseChange(line, Long.toString(lineCount)));
+                }
+            }
+            return changes;
+        } catch (IOException e) {
+            reader.close();
+            reader = null;
+            throw e;
+        }
+    }
+
+    private void open() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+        lineCount = 0;
+        if (file.isPresent()) {
+            reader = Files.newBufferedReader(file.get(), StandardCharsets.UTF_8);
+        } else {
+            Socket socket = new Socket(host.get(), port);
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static EntityChange parseChange(String line, String offset) {
+        String[] parts = line.split("\t", 2);
+        String id = parts[0].trim();
+        if (!id.contains(":")) {
+            id = "wd:" + id;
+        }
+        Optional<Set<String>> changedProperties = Optional.empty();
+        if (parts.length == 2) {
+            Set<String> properties = new HashSet<>();
+            for (String property : parts[1].split(",")) {
+                if (!property.trim().isEmpty()) {
+                    properties.add(property.trim());
+                }
+            }
+            changedProperties = Optional.of(properties);
+        }
+        return new EntityChange(Namespaces.reduce(id), offset, changedProperties);
+    }
+}
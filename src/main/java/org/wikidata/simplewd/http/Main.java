@@ -26,33 +26,69 @@ import org.eclipse.rdf4j.rio.Rio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wikidata.simplewd.api.CommonsAPI;
+import org.wikidata.simplewd.api.LanguagePolicy;
 import org.wikidata.simplewd.api.WikidataAPI;
 import org.wikidata.simplewd.api.WikipediaAPI;
+import org.wikidata.simplewd.changes.CacheInvalidator;
+import org.wikidata.simplewd.changes.EntityChangeSource;
+import org.wikidata.simplewd.changes.RecentChangesSource;
+import org.wikidata.simplewd.changes.ReplayChangeSource;
 import org.wikidata.simplewd.http.html.EntityRenderer;
 import org.wikidata.simplewd.http.html.MainRenderer;
 import org.wikidata.simplewd.http.html.SwaggerRenderer;
 import org.wikidata.simplewd.jsonld.JsonLdBuilder;
 import org.wikidata.simplewd.jsonld.JsonLdEntity;
 import org.wikidata.simplewd.jsonld.JsonLdRoot;
+import org.wikidata.simplewd.mapping.statement.ClassHierarchyIndex;
+import org.wikidata.simplewd.mapping.statement.TypeMapper;
 import org.wikidata.simplewd.model.EntityLookup;
+import org.wikidata.simplewd.model.ItemIds;
 import org.wikidata.simplewd.model.LocaleFilter;
 import org.wikidata.simplewd.model.Namespaces;
 import org.wikidata.simplewd.model.value.EntityValue;
 import org.wikidata.simplewd.rdf.RDFConverter;
+import org.wikidata.simplewd.store.ItemIdFilter;
+import org.wikidata.simplewd.store.LabelStore;
+import org.wikidata.simplewd.store.LocalEntityLookup;
+import org.wikidata.simplewd.store.PersistentEntityCache;
+import org.wikidata.wdtk.wikibaseapi.ApiConnection;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
+    private static final LocaleFilter ALL_LANGUAGES = new LocaleFilter("*");
 
     private final EntityLookup entityLookup;
+    private final Optional<WikidataAPI> wikidataAPI;
     private final JsonLdBuilder jsonLdBuilder;
     private final EntityRenderer entityRenderer;
     private final RDFConverter rdfConverter;
 
     private Main() throws IOException {
-        entityLookup = new WikidataAPI();
+        String classHierarchyIndex = System.getenv("CLASS_HIERARCHY_INDEX");
+        if (classHierarchyIndex != null) {
+            TypeMapper.getInstance().setClassHierarchyIndex(ClassHierarchyIndex.readFrom(Paths.get(classHierarchyIndex)));
+        }
+        String entityStore = System.getenv("ENTITY_STORE");
+        if (entityStore != null) {
+            wikidataAPI = Optional.empty();
+            entityLookup = new LocalEntityLookup(Paths.get(entityStore));
+        } else {
+            wikidataAPI = Optional.of(new WikidataAPI(
+                    getPersistentEntityCache(), getItemIdFilter(), getBatchWindowMillis(), getMissingEntityTtlMinutes(),
+                    getParallelMappingThreshold(), getLanguagePolicy(), getLabelStore()
+            ));
+            entityLookup = wikidataAPI.get();
+            startCacheInvalidator(wikidataAPI.get());
+        }
         CommonsAPI commonsAPI = new CommonsAPI();
         WikipediaAPI wikipediaAPI = new WikipediaAPI();
         jsonLdBuilder = new JsonLdBuilder(entityLookup, commonsAPI, wikipediaAPI);
@@ -69,6 +105,7 @@ public class Main {
                 .get("", ctx -> ctx.redirect("/simplewd"))
                 .get("/simplewd", ctx -> ctx.html((new MainRenderer()).render()))
                 .get("/simplewd/swagger.html", ctx -> ctx.html((new SwaggerRenderer()).render()))
+                .get("/simplewd/metrics", ctx -> ctx.json(main.getMetrics()))
                 .get("/simplewd/entity/:id", ctx -> ctx.redirect("/simplewd/v0/entity/" + ctx.param("id")))
                 .get("/simplewd/v0/entity/:id", ctx -> {
                     LocaleFilter localeFilter = getLocaleFilter(ctx);
@@ -113,6 +150,82 @@ public class Main {
         return (port != null) ? Integer.valueOf(port) : 7000;
     }
 
+    private static void startCacheInvalidator(WikidataAPI wikidataAPI) {
+        String source = System.getenv("ENTITY_CHANGE_SOURCE");
+        if (source == null) {
+            return;
+        }
+        EntityChangeSource changeSource;
+        if (source.equals("recentchanges")) {
+            changeSource = new RecentChangesSource(ApiConnection.getWikidataApiConnection());
+        } else if (source.startsWith("file:")) {
+            changeSource = ReplayChangeSource.fromFile(Paths.get(source.substring("file:".length())));
+        } else if (source.startsWith("socket:")) {
+            String[] address = source.substring("socket:".length()).split(":");
+            changeSource = ReplayChangeSource.fromSocket(address[0], Integer.valueOf(address[1]));
+        } else {
+            throw new IllegalArgumentException("Unsupported ENTITY_CHANGE_SOURCE: " + source);
+        }
+        String checkpoint = System.getenv("ENTITY_CHANGE_CHECKPOINT");
+        new CacheInvalidator(
+                changeSource, wikidataAPI, Optional.ofNullable(checkpoint).map(Paths::get), 5, TimeUnit.SECONDS
+        ).start();
+    }
+
+    private static long getBatchWindowMillis() {
+        String batchWindow = System.getenv("ENTITY_BATCH_WINDOW_MS");
+        return (batchWindow != null) ? Long.valueOf(batchWindow) : 5;
+    }
+
+    private static long getMissingEntityTtlMinutes() {
+        String ttl = System.getenv("MISSING_ENTITY_TTL_MINUTES");
+        return (ttl != null) ? Long.valueOf(ttl) : 24 * 60;
+    }
+
+    private static int getParallelMappingThreshold() {
+        String threshold = System.getenv("PARALLEL_MAPPING_MIN_STATEMENTS");
+        return (threshold != null) ? Integer.valueOf(threshold) : 0;
+    }
+
+    private static Optional<LanguagePolicy> getLanguagePolicy() {
+        String languages = System.getenv("ENTITY_LANGUAGES");
+        if (languages == null) {
+            return Optional.empty();
+        }
+        String fallbackLanguages = System.getenv("ENTITY_FALLBACK_LANGUAGES");
+        String promotionThreshold = System.getenv("LANGUAGE_PROMOTION_THRESHOLD");
+        return Optional.of(new LanguagePolicy(
+                Arrays.asList(languages.split("\\s*,\\s*")),
+                Arrays.asList(((fallbackLanguages != null) ? fallbackLanguages : "en,mul").split("\\s*,\\s*")),
+                (promotionThreshold != null) ? Long.valueOf(promotionThreshold) : 100
+        ));
+    }
+
+    private static Optional<LabelStore> getLabelStore() throws IOException {
+        String directory = System.getenv("LABEL_STORE");
+        return (directory != null) ? Optional.of(new LabelStore(Paths.get(directory))) : Optional.empty();
+    }
+
+    private static Optional<ItemIdFilter> getItemIdFilter() throws IOException {
+        String file = System.getenv("ITEM_ID_FILTER");
+        return (file != null) ? Optional.of(ItemIdFilter.readFrom(Paths.get(file))) : Optional.empty();
+    }
+
+    private static Optional<PersistentEntityCache> getPersistentEntityCache() throws IOException {
+        String directory = System.getenv("ENTITY_CACHE_DIRECTORY");
+        if (directory == null) {
+            return Optional.empty();
+        }
+        String maxBytes = System.getenv("ENTITY_CACHE_MAX_BYTES");
+        String ttlDays = System.getenv("ENTITY_CACHE_TTL_DAYS");
+        return Optional.of(new PersistentEntityCache(
+                Paths.get(directory),
+                (maxBytes != null) ? Long.valueOf(maxBytes) : 4L << 30,
+                (ttlDays != null) ? Long.valueOf(ttlDays) : 7,
+                TimeUnit.DAYS
+        ));
+    }
+
     private static ContentType getResponseContentType(Context ctx, String type) {
         if (type != null && type.length() > 0) {
             switch (type) {
@@ -178,23 +291,35 @@ public class Main {
         }
     }
 
+    private Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new TreeMap<>();
+        wikidataAPI.ifPresent(api -> {
+            metrics.put("wikidataBatching", api.getBatchingMetrics());
+            metrics.put("mappingRejections", api.getMappingRejections());
+            metrics.put("languagePolicy", api.getLanguagePolicyMetrics());
+        });
+        return metrics;
+    }
+
     private JsonLdRoot<JsonLdEntity> getResourceAsJson(String id, LocaleFilter localeFilter) {
-        return jsonLdBuilder.buildEntity(getResource(id), localeFilter);
+        return jsonLdBuilder.buildEntity(getResource(id, localeFilter), localeFilter);
     }
 
     private String getResourceAsHTML(String id, LocaleFilter localeFilter) {
-        return entityRenderer.render(getResource(id), localeFilter);
+        return entityRenderer.render(getResource(id, localeFilter), localeFilter);
     }
 
-    private EntityValue getResource(String id) {
+    private EntityValue getResource(String id, LocaleFilter localeFilter) {
         LOGGER.info("Retrieving: " + id);
+        long itemNumber = ItemIds.fromIRI(id);
+        if (itemNumber == ItemIds.NOT_AN_ITEM) {
+            throw new HaltException(400, Namespaces.expand(id) + " is not a supported entity");
+        }
         try {
-            return entityLookup.getEntityForIRI(id).orElseThrow(() -> new HaltException(404, Namespaces.expand(id) + " not found"));
+            return entityLookup.getEntity(localeFilter, itemNumber).orElseThrow(() -> new HaltException(404, Namespaces.expand(id) + " not found"));
         } catch (IOException e) {
             LOGGER.error(e.getMessage(), e);
             throw new HaltException(500);
-        } catch (IllegalArgumentException e) {
-            throw new HaltException(400, Namespaces.expand(id) + " is not a supported entity");
         }
     }
 
@@ -203,7 +328,7 @@ public class Main {
             RDFWriter writer = Rio.createWriter(format, outputStream);
             writer.startRDF();
             Namespaces.NAMESPACES.forEach(writer::handleNamespace);
-            rdfConverter.toRDF(getResource(id)).forEach(writer::handleStatement);
+            rdfConverter.toRDF(getResource(id, ALL_LANGUAGES)).forEach(writer::handleStatement);
             writer.endRDF();
 
             ctx.contentType(format.getDefaultMIMEType());
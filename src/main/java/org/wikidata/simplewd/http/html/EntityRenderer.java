@@ -26,13 +26,14 @@ import org.wikidata.simplewd.api.WikipediaAPI;
 import org.wikidata.simplewd.model.*;
 import org.wikidata.simplewd.model.value.*;
 
-import javax.xml.datatype.DatatypeConstants;
-import javax.xml.namespace.QName;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.net.URI;
 import java.net.URLEncoder;
-import java.text.DateFormat;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -63,9 +64,11 @@ public class EntityRenderer extends HTMLRenderer {
     private String render(EntityValue entity) {
         //We preload entities
         try {
-            entityLookup.getEntitiesForIRI(entity.getClaims().map(Claim::getValue).flatMap(value ->
-                    (value instanceof EntityIdValue) ? Stream.of(value.toString()) : Stream.empty()
-            ).toArray(String[]::new));
+            entityLookup.getShallowEntities(localeFilter, entity.getClaims().map(Claim::getValue)
+                    .filter(value -> value instanceof EntityIdValue)
+                    .mapToLong(value -> ((EntityIdValue) value).getItemNumber())
+                    .filter(itemNumber -> itemNumber != ItemIds.NOT_AN_ITEM)
+                    .toArray());
         } catch (Exception e) {
             //We ignore the errors
         }
@@ -162,7 +165,7 @@ public class EntityRenderer extends HTMLRenderer {
                 section(
                         h1(
                                 shape.getClasses()
-                                        .map(ConstantValue::new)
+                                        .map(ConstantValue::of)
                                         .map(this::renderValue)
                                         .toArray(DomContent[]::new)
                         ).withClasses("mdc-card__title", "mdc-card__title--large")
@@ -175,7 +178,7 @@ public class EntityRenderer extends HTMLRenderer {
                                     boolean twoLines = property.getDatatypes().isPresent() ||
                                             property.getNodeShape().map(sh -> !sh.getClasses().findAny().isPresent()).orElse(false);
                                     return section(
-                                            h3(renderValue(new ConstantValue(property.getProperty()))),
+                                            h3(renderValue(ConstantValue.of(property.getProperty()))),
                                             (property.getMaxCount() > 1)
                                                     ? ul(
                                                     entity.getValues(property.getProperty())
@@ -203,7 +206,7 @@ public class EntityRenderer extends HTMLRenderer {
         List<DomContent> annotations = new ArrayList<>();
         if (role.hasValueFor("character")) {
             annotations.add(join(
-                    renderValue(new ConstantValue("character")),
+                    renderValue(ConstantValue.of("character")),
                     ": ",
                     role.getValue("character").map(this::renderValue).orElse(text("")) //TODO: multiple characters
             ));
@@ -259,15 +262,20 @@ public class EntityRenderer extends HTMLRenderer {
     }
 
     private DomContent renderValue(CalendarValue value) {
-        Date date = value.getValue().toGregorianCalendar().getTime();
-        QName datatype = value.getValue().getXMLSchemaType();
         String serialization = value.toString();
-        if (datatype.equals(DatatypeConstants.DATETIME)) {
-            serialization = DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, localeFilter.getBestLocale()).format(date);
-        } else if (datatype.equals(DatatypeConstants.DATE)) {
-            serialization = DateFormat.getDateInstance(DateFormat.DEFAULT, localeFilter.getBestLocale()).format(date);
+        try {
+            if (value.getPrecision() == CalendarValue.Precision.SECOND) {
+                serialization = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM).withLocale(localeFilter.getBestLocale()).format(
+                        LocalDateTime.of(Math.toIntExact(value.getYear()), value.getMonth(), value.getDay(), value.getHour(), value.getMinute(), value.getSecond())
+                );
+            } else if (value.getPrecision() == CalendarValue.Precision.DAY) {
+                serialization = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withLocale(localeFilter.getBestLocale()).format(
+                        LocalDate.of(Math.toIntExact(value.getYear()), value.getMonth(), value.getDay())
+                );
+            }
+        } catch (DateTimeException | ArithmeticException e) {
+            //Not representable by java.time, we keep the XML Schema serialization
         }
-        DateFormat.getDateInstance(DateFormat.DEFAULT, localeFilter.getBestLocale());
         return time(serialization).attr("datetime", value.toString()); //TODO: formatting
     }
 
@@ -292,14 +300,18 @@ public class EntityRenderer extends HTMLRenderer {
 
     private DomContent renderValue(EntityIdValue value) {
         DomContent basicRendering = a(value.toString()).withHref(BASE_URL + value.toString());
+        if (value.getItemNumber() == ItemIds.NOT_AN_ITEM) {
+            return basicRendering;
+        }
         try {
-            return entityLookup.getEntityForIRI(value.toString())
-                    .map(entity -> (DomContent)
-                            a(localeFilter.getBestValues(entity.getValues("name"))
-                                    .findAny().map(this::simpleRender).orElseGet(() -> text(value.toString())))
-                                    .withHref(BASE_URL + value.toString())
-                                    .withTitle(localeFilter.getBestValues(entity.getValues("description")).findAny().map(Object::toString).orElse(""))
-                    ).orElse(basicRendering);
+            Optional<LocaleStringValue> label = entityLookup.getBestLabels(localeFilter, value.getItemNumber()).findAny();
+            Optional<LocaleStringValue> description = entityLookup.getBestDescriptions(localeFilter, value.getItemNumber()).findAny();
+            if (!label.isPresent() && !description.isPresent()) {
+                return basicRendering;
+            }
+            return a(label.map(this::simpleRender).orElseGet(() -> text(value.toString())))
+                    .withHref(BASE_URL + value.toString())
+                    .withTitle(description.map(Object::toString).orElse(""));
         } catch (Exception e) {
             LOGGER.info(e.getMessage(), e);
         }
@@ -315,14 +327,11 @@ public class EntityRenderer extends HTMLRenderer {
     }
 
     private Optional<String> getWikipediaArticleURI(EntityValue entity) {
-        return entity.getValues("sameAs").sorted().flatMap(value -> {
-            if (value instanceof URIValue) {
-                URI uri = ((URIValue) value).getValue();
-                if (uri.getHost().equals(localeFilter.getBestLocale().getLanguage() + ".wikipedia.org")) {
-                    return Stream.of(uri.toString());
-                }
-            }
-            return Stream.empty();
-        }).findAny();
+        String wikipediaHost = localeFilter.getBestLocale().getLanguage() + ".wikipedia.org";
+        return entity.getValues("sameAs")
+                .filter(value -> value instanceof URIValue && wikipediaHost.equals(((URIValue) value).getHost()))
+                .sorted()
+                .map(Value::toString)
+                .findAny();
     }
 }
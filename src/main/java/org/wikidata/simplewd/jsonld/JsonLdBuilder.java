@@ -28,6 +28,7 @@ import org.wikidata.simplewd.model.value.*;
 import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -39,6 +40,10 @@ public class JsonLdBuilder {
     private static final ShaclSchema SCHEMA = ShaclSchema.getSchema();
     private static final ShaclSchema.NodeShape IMAGE_OBJECT_SHAPE = SCHEMA.getShapeForClass("ImageObject");
     private static final ShaclSchema.NodeShape ARTICLE_SHAPE = SCHEMA.getShapeForClass("Article");
+    /**
+     * Properties provided by {@link EntityLookup#getShallowEntities} in addition to the types
+     */
+    private static final Set<String> SHALLOW_ENTITY_PROPERTIES = new HashSet<>(Arrays.asList("name", "description", "image"));
     private static final Optional<Set<String>> LANG_STRING_RANGE = Optional.of(Collections.singleton("rdf:langString"));
     private static final KartographerAPI KARTOGRAPHER_API = new KartographerAPI();
 
@@ -65,14 +70,7 @@ public class JsonLdBuilder {
 
     private JsonLdEntity mapEntity(EntityValue entity, boolean withChildren, LocaleFilter localeFilter, ShaclSchema.NodeShape nodeShape) {
         if (withChildren) {
-            //We preload entities
-            try {
-                entityLookup.getEntitiesForIRI(entity.getClaims().map(Claim::getValue).flatMap(value ->
-                        (value instanceof EntityValue) ? Stream.of(value.toString()) : Stream.empty()
-                ).toArray(String[]::new));
-            } catch (Exception e) {
-                //We ignore the errors
-            }
+            preloadChildren(entity, localeFilter, nodeShape);
         }
 
         Map<String, Object> propertyValues = new HashMap<>();
@@ -121,7 +119,7 @@ public class JsonLdBuilder {
                         );
                     } else if (withChildren && value instanceof EntityIdValue) {
                         try {
-                            return Stream.of(entityLookup.getEntityForIRI(value.toString())
+                            return Stream.of(getChild(propertyShape, localeFilter, (EntityIdValue) value)
                                     .map(e -> (Object) propertyShape.getNodeShape()
                                             .map(rangeShape -> mapEntity(e, false, localeFilter, rangeShape))
                                             .orElseGet(() -> mapEntity(e, false, localeFilter))
@@ -168,10 +166,54 @@ public class JsonLdBuilder {
         return new JsonLdEntity(entity.getIRI(), entity.getTypes().collect(Collectors.toList()), propertyValues);
     }
 
+    private void preloadChildren(EntityValue entity, LocaleFilter localeFilter, ShaclSchema.NodeShape nodeShape) {
+        LongStream.Builder shallowItemNumbers = LongStream.builder();
+        LongStream.Builder fullItemNumbers = LongStream.builder();
+        nodeShape.getProperties().forEach(propertyShape ->
+                entity.getValues(propertyShape.getProperty()).forEach(value -> {
+                    long itemNumber = (value instanceof EntityIdValue) ? ((EntityIdValue) value).getItemNumber() : ItemIds.NOT_AN_ITEM;
+                    if (itemNumber != ItemIds.NOT_AN_ITEM) {
+                        (isShallowChild(propertyShape) ? shallowItemNumbers : fullItemNumbers).add(itemNumber);
+                    }
+                })
+        );
+        try {
+            long[] shallowItems = shallowItemNumbers.build().toArray();
+            if (shallowItems.length > 0) {
+                entityLookup.getShallowEntities(localeFilter, shallowItems);
+            }
+            long[] fullItems = fullItemNumbers.build().toArray();
+            if (fullItems.length > 0) {
+                entityLookup.getEntities(fullItems);
+            }
+        } catch (Exception e) {
+            //We ignore the errors
+        }
+    }
+
+    private Optional<EntityValue> getChild(ShaclSchema.PropertyShape propertyShape, LocaleFilter localeFilter, EntityIdValue id) throws IOException {
+        if (id.getItemNumber() == ItemIds.NOT_AN_ITEM) {
+            return Optional.empty();
+        }
+        return isShallowChild(propertyShape)
+                ? entityLookup.getShallowEntity(localeFilter, id.getItemNumber())
+                : entityLookup.getEntity(localeFilter, id.getItemNumber());
+    }
+
+    /**
+     * @return if the shallow entity contains all the values of the range of the property.
+     * The shape of the values without range depends on their types: the full entity is needed.
+     */
+    private static boolean isShallowChild(ShaclSchema.PropertyShape propertyShape) {
+        return propertyShape.getNodeShape()
+                .map(rangeShape -> rangeShape.getProperties().allMatch(property -> SHALLOW_ENTITY_PROPERTIES.contains(property.getProperty())))
+                .orElse(false);
+    }
+
     private Optional<GeoValue> buildGeoValueFromKartographer(EntityValue entity) {
         try {
             //We only do geo shape lookup for Places in order to avoid unneeded requests
-            if (entity.getTypes().anyMatch(type -> type.equals("Place"))) {
+            if (entity.hasType("Place")) {
                 Geometry shape = KARTOGRAPHER_API.getShapeForItemId(Namespaces.expand(entity.getIRI()));
                 if (!shape.isEmpty()) {
                     return Optional.of(GeoValue.buildGeoValue(shape));
@@ -187,7 +229,7 @@ public class JsonLdBuilder {
         //We only do geo shape lookup for Places in order to avoid unneeded requests
         return entity.getValues("sameAs")
                 .map(v -> (URIValue) v)
-                .filter(uri -> uri.getValue().getHost().equals(localeFilter.getBestLocale().getLanguage() + ".wikipedia.org"))
+                .filter(uri -> uri.getHost().equals(localeFilter.getBestLocale().getLanguage() + ".wikipedia.org"))
                 .findAny()
                 .flatMap(uri -> {
                     try {
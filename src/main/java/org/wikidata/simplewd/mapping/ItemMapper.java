@@ -18,38 +18,72 @@ package org.wikidata.simplewd.mapping;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.wikidata.simplewd.mapping.statement.InvalidWikibaseValueException;
 import org.wikidata.simplewd.mapping.statement.MapperRegistry;
+import org.wikidata.simplewd.mapping.statement.StatementMapper;
+import org.wikidata.simplewd.mapping.statement.TypeMapper;
 import org.wikidata.simplewd.model.Claim;
 import org.wikidata.simplewd.model.value.EntityValue;
 import org.wikidata.simplewd.model.value.LocaleStringValue;
+import org.wikidata.simplewd.model.value.SiteLinkValue;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 
-import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class ItemMapper {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ItemMapper.class);
     private static final PropertyIdValue P31 = Datamodel.makeWikidataPropertyIdValue("P31");
-    private Sites sites;
+    private static final PropertyIdValue P18 = Datamodel.makeWikidataPropertyIdValue("P18");
+    /**
+     * Properties kept by the shallow entity lookups
+     */
+    public static final Set<PropertyIdValue> SHALLOW_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(P31, P18)));
+    /**
+     * BCP 47 tag of the Wikimedia language codes already seen
+     */
+    private static final ConcurrentMap<String, String> LANGUAGE_TAGS = new ConcurrentHashMap<>();
+    private SiteTable siteTable;
     private MapperRegistry mapperRegistry;
+    private int parallelMappingThreshold;
 
     public ItemMapper(Sites sites) {
-        this.sites = sites;
+        this(sites, 0);
+    }
+
+    /**
+     * @param parallelMappingThreshold number of statements from which the statements of an item are mapped in parallel.
+     *                                 0 to always map them sequentially.
+     */
+    public ItemMapper(Sites sites, int parallelMappingThreshold) {
+        this.siteTable = new SiteTable(sites);
         this.mapperRegistry = new MapperRegistry();
+        this.parallelMappingThreshold = parallelMappingThreshold;
     }
 
+    /**
+     * Maps the item once the types of its classes are resolved
+     */
+    public CompletableFuture<EntityValue> mapAsync(ItemDocument document) {
+        return resolveTypes(document).thenApply(ignored -> map(document));
+    }
+
+    /**
+     * Maps the item without waiting for the types of its classes: only the already resolved ones are added
+     */
     public EntityValue map(ItemDocument document) {
         EntityValue entity = new EntityValue(document.getEntityId().getIri());
         entity.addType("Thing");
         addTermsToResource(document, entity);
         addSiteLinksToResource(document, entity);
         addStatementsToResource(document, entity);
-        return entity;
+        return entity.freeze();
     }
 
     private void addTermsToResource(TermedDocument termedDocument, EntityValue entity) {
@@ -68,36 +102,92 @@ public class ItemMapper {
         );
     }
 
+    private CompletableFuture<Void> resolveTypes(ItemDocument document) {
+        StatementGroup statementGroup = document.findStatementGroup(P31);
+        return (statementGroup == null)
+                ? CompletableFuture.completedFuture(null)
+                : resolveTypes(statementGroup.getStatements());
+    }
+
+    /**
+     * Resolves the types of all the classes of the item in parallel before the statements are mapped one by one.
+     * The returned future never fails: the classes that could not be resolved are not mapped.
+     */
+    static CompletableFuture<Void> resolveTypes(List<Statement> instanceOfStatements) {
+        return CompletableFuture.allOf(instanceOfStatements.stream()
+                .filter(statement -> statement.getValue() instanceof ItemIdValue)
+                .map(statement -> TypeMapper.getInstance().mapClassAsync((ItemIdValue) statement.getValue())
+                        .handle((types, e) -> types))
+                .toArray(CompletableFuture<?>[]::new)
+        );
+    }
+
     private void addSiteLinksToResource(ItemDocument itemDocument, EntityValue entity) {
         itemDocument.getSiteLinks().values().stream()
-                .filter(siteLink -> sites.getGroup(siteLink.getSiteKey()).equals("wikipedia"))
-                .forEach(siteLink ->
-                        entity.addClaim(new Claim("sameAs", URI.create(sites.getSiteLinkUrl(siteLink))))
-                );
+                .forEach(siteLink -> mapSiteLink(siteLink.getSiteKey(), siteLink.getPageTitle()).ifPresent(entity::addClaim));
+    }
+
+    boolean isMappedSite(String siteKey) {
+        return siteTable.getMappedSite(siteKey).isPresent();
+    }
+
+    /**
+     * @return the sameAs claim of the link if its site is mapped. Its URI is only built when it is read.
+     */
+    Optional<Claim> mapSiteLink(String siteKey, String title) {
+        return siteTable.getMappedSite(siteKey).map(site -> new Claim("sameAs", new SiteLinkValue(site, title)));
     }
 
     private void addStatementsToResource(StatementDocument statementDocument, EntityValue entity) {
-        statementDocument.getStatementGroups().forEach(group ->
-                mapperRegistry.getMapperForProperty(group.getProperty()).ifPresent(mapper -> {
-                    Stream<Statement> statements = mapper.onlyBestRank()
-                            ? getBestStatements(group).stream()
-                            : group.getStatements().stream().filter(statement -> !statement.getRank().equals(StatementRank.DEPRECATED));
-                    statements.flatMap(statement -> {
-                        try {
-                            return mapper.mapStatement(statement);
-                        } catch (InvalidWikibaseValueException e) {
-                            //LOGGER.warn(e.getMessage(), e);
-                            return Stream.empty();
-                        }
-                    }).forEach(entity::addClaim);
-                })
-        );
+        addStatementGroups(statementDocument.getStatementGroups(), entity);
     }
 
-    private List<Statement> getBestStatements(StatementGroup statementGroup) {
+    void addStatementGroups(List<StatementGroup> groups, EntityValue entity) {
+        List<Map.Entry<StatementMapper, Statement>> statements = new ArrayList<>();
+        for (StatementGroup group : groups) {
+            mapperRegistry.getMapperForProperty(group.getProperty()).ifPresent(mapper ->
+                    getStatementsToMap(mapper, group.getStatements()).forEach(statement ->
+                            statements.add(new AbstractMap.SimpleImmutableEntry<>(mapper, statement))
+                    )
+            );
+        }
+        if (parallelMappingThreshold > 0 && statements.size() >= parallelMappingThreshold) {
+            //Each task maps a slice of the statements into its own list, the lists are merged at the end.
+            //The tasks never block: the types of the classes are resolved before the mapping starts.
+            MappingPool.INSTANCE.submit(() -> statements.parallelStream()
+                    .flatMap(statement -> mapStatement(statement.getKey(), statement.getValue()))
+                    .collect(Collectors.toList())
+            ).join().forEach(entity::addClaim);
+        } else {
+            statements.forEach(statement -> mapStatement(statement.getKey(), statement.getValue()).forEach(entity::addClaim));
+        }
+    }
+
+    /**
+     * @return the number of Wikibase values ignored by the mapping, by property id and rejection reason
+     */
+    public Map<String, Map<String, Long>> getRejectionCounts() {
+        return mapperRegistry.getRejectionCounts();
+    }
+
+    boolean hasMapperForProperty(String propertyId) {
+        return mapperRegistry.isMappedProperty(propertyId);
+    }
+
+    private List<Statement> getStatementsToMap(StatementMapper mapper, List<Statement> group) {
+        return mapper.onlyBestRank()
+                ? getBestStatements(group)
+                : group.stream().filter(statement -> !statement.getRank().equals(StatementRank.DEPRECATED)).collect(Collectors.toList());
+    }
+
+    private Stream<Claim> mapStatement(StatementMapper mapper, Statement statement) {
+        return mapper.mapStatement(statement);
+    }
+
+    private List<Statement> getBestStatements(List<Statement> statementGroup) {
         List<Statement> preferred = new ArrayList<>();
         List<Statement> normals = new ArrayList<>();
-        for (Statement statement : statementGroup.getStatements()) {
+        for (Statement statement : statementGroup) {
             if (statement.getRank().equals(StatementRank.PREFERRED)) {
                 preferred.add(statement);
             } else if (statement.getRank().equals(StatementRank.NORMAL)) {
@@ -108,11 +198,26 @@ public class ItemMapper {
     }
 
     private LocaleStringValue convert(MonolingualTextValue value) {
+        return convert(value.getText(), value.getLanguageCode());
+    }
+
+    static LocaleStringValue convert(String text, String wikimediaLanguageCode) {
+        return new LocaleStringValue(text, LANGUAGE_TAGS.computeIfAbsent(wikimediaLanguageCode, ItemMapper::toLanguageTag));
+    }
+
+    private static String toLanguageTag(String wikimediaLanguageCode) {
         try {
-            return new LocaleStringValue(value.getText(), WikimediaLanguageCodes.getLanguageCode(value.getLanguageCode()));
+            return WikimediaLanguageCodes.getLanguageCode(wikimediaLanguageCode);
         } catch (IllegalArgumentException e) {
             //TODO: LOGGER.warn(e.getMessage());
-            return new LocaleStringValue(value.getText(), value.getLanguageCode());
+            return wikimediaLanguageCode;
         }
     }
+
+    /**
+     * Pool of the parallel mappings, only created if they are enabled
+     */
+    private static final class MappingPool {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
 }
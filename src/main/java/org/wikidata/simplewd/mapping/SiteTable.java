@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.mapping;
+
+import org.wikidata.simplewd.model.value.SiteLinkValue;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The Wikipedia sites of the Wikidata Toolkit site table, compiled into URL templates.
+ * <p>
+ * The site table does not allow to list its sites so each site is compiled the first time its key is looked up.
+ */
+final class SiteTable {
+
+    private static final String TITLE_MARKER = "SIMPLEWD_TITLE";
+
+    private final Sites sites;
+    private final ConcurrentMap<String, Optional<SiteLinkValue.Site>> mappedSites = new ConcurrentHashMap<>();
+
+    SiteTable(Sites sites) {
+        this.sites = sites;
+    }
+
+    /**
+     * @return the site if it is a Wikipedia whose links are mapped
+     */
+    Optional<SiteLinkValue.Site> getMappedSite(String siteKey) {
+        return mappedSites.computeIfAbsent(siteKey, this::compileSite);
+    }
+
+    private Optional<SiteLinkValue.Site> compileSite(String siteKey) {
+        if (!"wikipedia".equals(sites.getGroup(siteKey)) || !"mediawiki".equals(sites.getSiteType(siteKey))) {
+            return Optional.empty();
+        }
+        String pageUrl = sites.getPageUrl(siteKey, TITLE_MARKER);
+        int markerPosition = pageUrl.indexOf(TITLE_MARKER);
+        return Optional.of(new SiteLinkValue.Site(
+                siteKey, pageUrl.substring(0, markerPosition), pageUrl.substring(markerPosition + TITLE_MARKER.length())
+        ));
+    }
+}
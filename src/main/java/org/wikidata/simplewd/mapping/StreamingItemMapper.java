@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.mapping;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.wikidata.simplewd.model.Claim;
+import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.json.jackson.JacksonItemDocument;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Maps the items of a wbgetentities JSON response while it is parsed, without building the Wikidata Toolkit documents.
+ * <p>
+ * The statement groups without mapper, the references, the terms in the languages excluded by the filter and the
+ * site links that are not mapped are skipped at the token level. Only the kept statements are deserialized into
+ * Wikidata Toolkit objects in order to be given to the statement mappers of {@link ItemMapper}.
+ */
+public class StreamingItemMapper {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final PropertyIdValue P31 = Datamodel.makeWikidataPropertyIdValue("P31");
+    private static final String SITE_IRI = "http://www.wikidata.org/entity/";
+
+    private final ItemMapper itemMapper;
+
+    public StreamingItemMapper(ItemMapper itemMapper) {
+        this.itemMapper = itemMapper;
+    }
+
+    /**
+     * @param filter the terms, statements and site links to map. Aliases and site links are only mapped if they are
+     *               in the response.
+     * @return the mapped items by id (e.g. Q42), completed once the types of their classes are resolved.
+     * The missing items are not in the returned map. The response is entirely parsed before this method returns.
+     */
+    public CompletableFuture<Map<String, MappedItem>> mapEntities(InputStream input, DocumentDataFilter filter) throws IOException, MediaWikiApiErrorException {
+        Map<String, CompletableFuture<MappedItem>> items = new HashMap<>();
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(input)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (fieldName.equals("entities")) {
+                    expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String key = parser.getCurrentName();
+                        parser.nextToken();
+                        mapEntity(parser, key, filter).ifPresent(item -> items.put(key, item));
+                    }
+                } else if (fieldName.equals("error")) {
+                    JsonNode error = parser.readValueAsTree();
+                    MediaWikiApiErrorHandler.throwMediaWikiApiErrorException(error.path("code").asText(), error.path("info").asText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return CompletableFuture.allOf(items.values().toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            Map<String, MappedItem> mappedItems = new HashMap<>();
+            items.forEach((key, item) -> mappedItems.put(key, item.join()));
+            return mappedItems;
+        });
+    }
+
+    private Optional<CompletableFuture<MappedItem>> mapEntity(JsonParser parser, String key, DocumentDataFilter filter) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        String id = key;
+        long revisionId = 0;
+        boolean isMissing = false;
+        List<Claim> claims = new ArrayList<>();
+        ObjectNode statementGroups = OBJECT_MAPPER.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "id":
+                    id = parser.getText();
+                    break;
+                case "type":
+                    if (!parser.getText().equals("item")) {
+                        throw new IOException("It seems to not be the IRI of an item: http://www.wikidata.org/entity/" + key);
+                    }
+                    break;
+                case "missing":
+                    isMissing = true;
+                    parser.skipChildren();
+                    break;
+                case "lastrevid":
+                    revisionId = parser.getLongValue();
+                    break;
+                case "labels":
+                    readTerms(parser, filter, "name", claims);
+                    break;
+                case "descriptions":
+                    readTerms(parser, filter, "description", claims);
+                    break;
+                case "aliases":
+                    readAliases(parser, filter, claims);
+                    break;
+                case "claims":
+                    readStatementGroups(parser, filter, statementGroups);
+                    break;
+                case "sitelinks":
+                    readSiteLinks(parser, filter, claims);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (isMissing) {
+            return Optional.empty();
+        }
+
+        EntityValue entity = new EntityValue("wd:" + id);
+        entity.addType("Thing");
+        claims.forEach(entity::addClaim);
+        long itemRevisionId = revisionId;
+        if (statementGroups.size() > 0) {
+            //The skeleton document only contains the kept statements. It provides them their subject and site IRI.
+            ObjectNode skeleton = OBJECT_MAPPER.createObjectNode();
+            skeleton.put("type", "item");
+            skeleton.put("id", id);
+            skeleton.set("claims", statementGroups);
+            JacksonItemDocument document = OBJECT_MAPPER.treeToValue(skeleton, JacksonItemDocument.class);
+            document.setSiteIri(SITE_IRI);
+            StatementGroup instanceOfGroup = document.findStatementGroup(P31);
+            CompletableFuture<Void> typesResolution = (instanceOfGroup == null)
+                    ? CompletableFuture.completedFuture(null)
+                    : ItemMapper.resolveTypes(instanceOfGroup.getStatements());
+            return Optional.of(typesResolution.thenApply(ignored -> {
+                itemMapper.addStatementGroups(document.getStatementGroups(), entity);
+                return new MappedItem(entity.freeze(), itemRevisionId);
+            }));
+        }
+        return Optional.of(CompletableFuture.completedFuture(new MappedItem(entity.freeze(), revisionId)));
+    }
+
+    private void readTerms(JsonParser parser, DocumentDataFilter filter, String property, List<Claim> claims) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String languageCode = parser.getCurrentName();
+            parser.nextToken();
+            if (filter.includeLanguage(languageCode)) {
+                readTerm(parser, property, claims);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readAliases(JsonParser parser, DocumentDataFilter filter, List<Claim> claims) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String languageCode = parser.getCurrentName();
+            parser.nextToken();
+            if (filter.includeLanguage(languageCode)) {
+                expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readTerm(parser, "alternateName", claims);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readTerm(JsonParser parser, String property, List<Claim> claims) throws IOException {
+        String languageCode = null;
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (fieldName.equals("language")) {
+                languageCode = parser.getText();
+            } else if (fieldName.equals("value")) {
+                value = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (languageCode != null && value != null) {
+            claims.add(new Claim(property, ItemMapper.convert(value, languageCode)));
+        }
+    }
+
+    private void readStatementGroups(JsonParser parser, DocumentDataFilter filter, ObjectNode statementGroups) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String propertyId = parser.getCurrentName();
+            parser.nextToken();
+            if (!itemMapper.hasMapperForProperty(propertyId) || !filter.includePropertyId(Datamodel.makeWikidataPropertyIdValue(propertyId))) {
+                parser.skipChildren();
+                continue;
+            }
+            expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+            ArrayNode statements = statementGroups.putArray(propertyId);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                statements.add(readStatement(parser));
+            }
+        }
+    }
+
+    private ObjectNode readStatement(JsonParser parser) throws IOException {
+        ObjectNode statement = OBJECT_MAPPER.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if (fieldName.equals("references")) {
+                parser.skipChildren();
+            } else {
+                statement.set(fieldName, parser.readValueAsTree());
+            }
+        }
+        return statement;
+    }
+
+    private void readSiteLinks(JsonParser parser, DocumentDataFilter filter, List<Claim> claims) throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String siteKey = parser.getCurrentName();
+            parser.nextToken();
+            if (!filter.includeSiteLink(siteKey) || !itemMapper.isMappedSite(siteKey)) {
+                parser.skipChildren();
+                continue;
+            }
+            String title = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if (fieldName.equals("title")) {
+                    title = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (title != null) {
+                itemMapper.mapSiteLink(siteKey, title).ifPresent(claims::add);
+            }
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Invalid wbgetentities response: " + expected + " expected but " + actual + " found");
+        }
+    }
+
+    public static class MappedItem {
+        private final EntityValue entity;
+        private final long revisionId;
+
+        private MappedItem(EntityValue entity, long revisionId) {
+            this.entity = entity;
+            this.revisionId = revisionId;
+        }
+
+        public EntityValue getEntity() {
+            return entity;
+        }
+
+        public long getRevisionId() {
+            return revisionId;
+        }
+    }
+}
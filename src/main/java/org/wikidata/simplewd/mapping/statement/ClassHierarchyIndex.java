@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.mapping.statement;
+
+import org.wikidata.simplewd.model.value.TypeSetValue;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed schema.org types of the Wikidata classes, built from a dump by {@link ClassHierarchyIndexBuilder}.
+ * <p>
+ * Only the classes that are a subclass of a mapped or filtered class are stored, sorted by id, with the index of their
+ * type set in a small table of distinct type sets. Items created after the dump are not covered by the index.
+ */
+public class ClassHierarchyIndex {
+
+    private static final long FILE_MAGIC = 0x5357444348493031L; //SWDCHI01
+
+    private final long maxItemNumber;
+    private final long[] classNumbers;
+    private final int[] typeSetIds;
+    private final List<TypeSetValue> typeSets;
+    private final boolean[] filteredTypeSets;
+
+    ClassHierarchyIndex(long maxItemNumber, long[] classNumbers, int[] typeSetIds, List<TypeSetValue> typeSets, boolean[] filteredTypeSets) {
+        this.maxItemNumber = maxItemNumber;
+        this.classNumbers = classNumbers;
+        this.typeSetIds = typeSetIds;
+        this.typeSets = typeSets;
+        this.filteredTypeSets = filteredTypeSets;
+    }
+
+    /**
+     * @return if the class hierarchy of this item is known by the index
+     */
+    public boolean covers(long itemNumber) {
+        return itemNumber <= maxItemNumber;
+    }
+
+    public TypeSetValue getSchemaTypes(long classNumber) {
+        int position = Arrays.binarySearch(classNumbers, classNumber);
+        return (position < 0) ? TypeSetValue.EMPTY : typeSets.get(typeSetIds[position]);
+    }
+
+    public boolean isFiltered(long classNumber) {
+        int position = Arrays.binarySearch(classNumbers, classNumber);
+        return position >= 0 && filteredTypeSets[typeSetIds[position]];
+    }
+
+    public int size() {
+        return classNumbers.length;
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeLong(FILE_MAGIC);
+            output.writeLong(maxItemNumber);
+            output.writeInt(typeSets.size());
+            for (int i = 0; i < typeSets.size(); i++) {
+                output.writeBoolean(filteredTypeSets[i]);
+                //The type names are written because the ordinals of the bitsets are not stable across runs
+                List<String> types = typeSets.get(i).stream().collect(Collectors.toList());
+                output.writeInt(types.size());
+                for (String type : types) {
+                    output.writeUTF(type);
+                }
+            }
+            output.writeInt(classNumbers.length);
+            for (int i = 0; i < classNumbers.length; i++) {
+                output.writeLong(classNumbers[i]);
+                output.writeInt(typeSetIds[i]);
+            }
+        }
+    }
+
+    public static ClassHierarchyIndex readFrom(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readLong() != FILE_MAGIC) {
+                throw new IOException(file + " is not a class hierarchy index");
+            }
+            long maxItemNumber = input.readLong();
+            int typeSetCount = input.readInt();
+            List<TypeSetValue> typeSets = new ArrayList<>(typeSetCount);
+            boolean[] filteredTypeSets = new boolean[typeSetCount];
+            for (int i = 0; i < typeSetCount; i++) {
+                filteredTypeSets[i] = input.readBoolean();
+                int typeCount = input.readInt();
+                List<String> types = new ArrayList<>(typeCount);
+                for (int j = 0; j < typeCount; j++) {
+                    types.add(input.readUTF());
+                }
+                typeSets.add(TypeSetValue.of(types));
+            }
+            int classCount = input.readInt();
+            long[] classNumbers = new long[classCount];
+            int[] typeSetIds = new int[classCount];
+            for (int i = 0; i < classCount; i++) {
+                classNumbers[i] = input.readLong();
+                typeSetIds[i] = input.readInt();
+            }
+            return new ClassHierarchyIndex(maxItemNumber, classNumbers, typeSetIds, typeSets, filteredTypeSets);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.mapping.statement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.simplewd.model.ItemIds;
+import org.wikidata.simplewd.model.value.TypeSetValue;
+import org.wikidata.wdtk.datamodel.interfaces.*;
+import org.wikidata.wdtk.dumpfiles.DumpProcessingController;
+import org.wikidata.wdtk.dumpfiles.MwLocalDumpFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Builds a {@link ClassHierarchyIndex} from the subclass of (P279) statements of a Wikidata JSON dump.
+ * <p>
+ * Usage: ClassHierarchyIndexBuilder &lt;dump file or "latest"&gt; &lt;index file&gt;
+ */
+public class ClassHierarchyIndexBuilder implements EntityDocumentProcessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassHierarchyIndexBuilder.class);
+
+    private final Map<Long, long[]> superClasses = new HashMap<>();
+    private long maxItemNumber = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ClassHierarchyIndexBuilder <dump file or \"latest\"> <index file>");
+            System.exit(1);
+        }
+
+        ClassHierarchyIndex index = buildFromDump(args[0]);
+        index.writeTo(Paths.get(args[1]));
+        LOGGER.info(index.size() + " classes written to " + args[1]);
+    }
+
+    /**
+     * @param dump the dump file or "latest" for the most recent JSON dump
+     */
+    public static ClassHierarchyIndex buildFromDump(String dump) {
+        DumpProcessingController controller = new DumpProcessingController("wikidatawiki");
+        ClassHierarchyIndexBuilder builder = new ClassHierarchyIndexBuilder();
+        controller.registerEntityDocumentProcessor(builder, null, true);
+        if (dump.equals("latest")) {
+            controller.processMostRecentJsonDump();
+        } else {
+            controller.processDump(new MwLocalDumpFile(dump));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void processItemDocument(ItemDocument itemDocument) {
+        long itemNumber = ItemIds.fromId(itemDocument.getItemId());
+        maxItemNumber = Math.max(maxItemNumber, itemNumber);
+        StatementGroup statementGroup = itemDocument.findStatementGroup("P279");
+        if (statementGroup != null) {
+            superClasses.put(itemNumber, statementGroup.getStatements().stream()
+                    .map(Statement::getValue)
+                    .filter(value -> value instanceof ItemIdValue)
+                    .mapToLong(value -> ItemIds.fromId((ItemIdValue) value))
+                    .toArray()
+            );
+        }
+    }
+
+    @Override
+    public void processPropertyDocument(PropertyDocument propertyDocument) {
+        //Properties are not classes
+    }
+
+    ClassHierarchyIndex build() {
+        Map<Long, List<Long>> subClasses = new HashMap<>();
+        superClasses.forEach((subClass, classes) -> {
+            for (long superClass : classes) {
+                subClasses.computeIfAbsent(superClass, k -> new ArrayList<>()).add(subClass);
+            }
+        });
+
+        //We propagate the types of the mapped and filtered classes to all their subclasses
+        Map<Long, Set<String>> types = new HashMap<>();
+        Set<Long> filteredClasses = new HashSet<>();
+        TypeMapper.SCHEMA_TYPES.forEach((mappedClass, schemaTypes) ->
+                getSubClassesClosure(ItemIds.fromId(mappedClass), subClasses).forEach(subClass ->
+                        types.computeIfAbsent(subClass, k -> new TreeSet<>()).addAll(schemaTypes)
+                )
+        );
+        TypeMapper.FILTERED_TYPES.forEach(filteredClass ->
+                filteredClasses.addAll(getSubClassesClosure(ItemIds.fromId(filteredClass), subClasses))
+        );
+
+        Set<Long> classes = new TreeSet<>(types.keySet());
+        classes.addAll(filteredClasses);
+        long[] classNumbers = new long[classes.size()];
+        int[] typeSetIds = new int[classes.size()];
+        Map<Map.Entry<Set<String>, Boolean>, Integer> typeSetIdsByContent = new HashMap<>();
+        List<TypeSetValue> typeSets = new ArrayList<>();
+        List<Boolean> filteredTypeSets = new ArrayList<>();
+        int i = 0;
+        for (long classNumber : classes) {
+            Map.Entry<Set<String>, Boolean> typeSet = new AbstractMap.SimpleImmutableEntry<>(
+                    types.getOrDefault(classNumber, Collections.emptySet()), filteredClasses.contains(classNumber)
+            );
+            classNumbers[i] = classNumber;
+            typeSetIds[i] = typeSetIdsByContent.computeIfAbsent(typeSet, k -> {
+                typeSets.add(TypeSetValue.of(k.getKey()));
+                filteredTypeSets.add(k.getValue());
+                return typeSets.size() - 1;
+            });
+            i++;
+        }
+        boolean[] filtered = new boolean[filteredTypeSets.size()];
+        for (int j = 0; j < filtered.length; j++) {
+            filtered[j] = filteredTypeSets.get(j);
+        }
+        return new ClassHierarchyIndex(maxItemNumber, classNumbers, typeSetIds, typeSets, filtered);
+    }
+
+    private static Set<Long> getSubClassesClosure(long root, Map<Long, List<Long>> subClasses) {
+        Set<Long> closure = new HashSet<>();
+        Deque<Long> toVisit = new ArrayDeque<>();
+        toVisit.add(root);
+        while (!toVisit.isEmpty()) {
+            long current = toVisit.poll();
+            if (closure.add(current)) {
+                toVisit.addAll(subClasses.getOrDefault(current, Collections.emptyList()));
+            }
+        }
+        return closure;
+    }
+}
@@ -34,7 +34,7 @@ class CommonsFileSnakMapper implements StringSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         return Stream.of(new Claim(targetFieldName, new CommonsFileValue(value.getString())));
     }
 }
@@ -36,14 +36,16 @@ class ConstantItemIdSnakMapper implements ItemIdSnakMapper {
     ConstantItemIdSnakMapper(String targetFieldName, Map<String, String> mapping) {
         this.targetFieldName = targetFieldName;
         this.mapping = new HashMap<>();
-        mapping.forEach((k, v) -> this.mapping.put(Datamodel.makeWikidataItemIdValue(k), new ConstantValue(v)));
+        mapping.forEach((k, v) -> this.mapping.put(Datamodel.makeWikidataItemIdValue(k), ConstantValue.of(v)));
     }
 
     @Override
-    public Stream<Claim> mapItemIdValue(ItemIdValue value) throws InvalidWikibaseValueException {
-        if (!mapping.containsKey(value)) {
-            throw new InvalidWikibaseValueException("No conversion for key: " + value.toString());
+    public Stream<Claim> mapItemIdValue(ItemIdValue value, RejectionCounter rejections) {
+        ConstantValue constant = mapping.get(value);
+        if (constant == null) {
+            rejections.reject(RejectionCounter.Reason.UNSUPPORTED_VALUE);
+            return Stream.empty();
         }
-        return Stream.of(new Claim(targetFieldName, mapping.get(value)));
+        return Stream.of(new Claim(targetFieldName, constant));
     }
 }
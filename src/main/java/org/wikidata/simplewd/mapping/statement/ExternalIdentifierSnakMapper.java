@@ -37,15 +37,17 @@ class ExternalIdentifierSnakMapper implements StringSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         if (!pattern.matcher(value.getString()).matches()) {
-            throw new InvalidWikibaseValueException(value + " is not a valid identifier. It does not matches the pattern " + pattern);
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
         try {
             URI URI = new URI(URITemplate.replace("$1", value.getString()));
             return Stream.of(new Claim("sameAs", URI));
         } catch (URISyntaxException e) {
-            throw new InvalidWikibaseValueException(URITemplate.replace("$1", value.getString()) + " is an invalid URI", e);
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
     }
 }
@@ -35,32 +35,32 @@ class FullStatementMapper implements StatementMapper {
 
     private String targetFieldName;
     private SnakMapper mainSnakMapper;
+    private RejectionCounter mainSnakRejections;
     private Map<PropertyIdValue, SnakMapper> qualifiersMappers = new HashMap<>();
+    private Map<PropertyIdValue, RejectionCounter> qualifiersRejections = new HashMap<>();
 
-    FullStatementMapper(String targetFieldName, SnakMapper mainSnakMapper) {
+    FullStatementMapper(String targetFieldName, SnakMapper mainSnakMapper, RejectionCounter mainSnakRejections) {
         this.targetFieldName = targetFieldName;
         this.mainSnakMapper = mainSnakMapper;
+        this.mainSnakRejections = mainSnakRejections;
     }
 
-    void addQualifierMapper(PropertyIdValue propertyId, SnakMapper snakMapper) {
+    void addQualifierMapper(PropertyIdValue propertyId, SnakMapper snakMapper, RejectionCounter rejections) {
         qualifiersMappers.put(propertyId, snakMapper);
+        qualifiersRejections.put(propertyId, rejections);
     }
 
     @Override
-    public Stream<Claim> mapStatement(Statement statement) throws InvalidWikibaseValueException {
-        return mainSnakMapper.mapSnak(statement.getClaim().getMainSnak()).map(mainClaim -> {
+    public Stream<Claim> mapStatement(Statement statement) {
+        return mainSnakMapper.mapSnak(statement.getClaim().getMainSnak(), mainSnakRejections).map(mainClaim -> {
             EntityValue compoundValue = new EntityValue("wds:" + statement.getStatementId());
             compoundValue.addClaim(mainClaim);
             compoundValue.addType("Role");
 
             statement.getClaim().getAllQualifiers().forEachRemaining(qualifier -> {
-                Optional.ofNullable(qualifiersMappers.get(qualifier.getPropertyId())).ifPresent(mapper -> {
-                    try {
-                        mapper.mapSnak(qualifier).forEach(compoundValue::addClaim);
-                    } catch (InvalidWikibaseValueException e) {
-                        //TODO: logging
-                    }
-                });
+                Optional.ofNullable(qualifiersMappers.get(qualifier.getPropertyId())).ifPresent(mapper ->
+                        mapper.mapSnak(qualifier, qualifiersRejections.get(qualifier.getPropertyId())).forEach(compoundValue::addClaim)
+                );
             });
 
             return new Claim(targetFieldName, compoundValue);
@@ -41,19 +41,21 @@ class GlobeCoordinatesSnakMapper implements SnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections) {
         Value value = snak.getValue();
         if (value == null) {
             return Stream.empty();
         }
         if (!(value instanceof GlobeCoordinatesValue)) {
-            throw new InvalidWikibaseValueException(value + " should be a GlobeCoordinatesValue");
+            rejections.reject(RejectionCounter.Reason.UNEXPECTED_VALUE_TYPE);
+            return Stream.empty();
         }
-        return mapGlobeCoordinatesValue((GlobeCoordinatesValue) value);
+        return mapGlobeCoordinatesValue((GlobeCoordinatesValue) value, rejections);
     }
 
-    Stream<Claim> mapGlobeCoordinatesValue(GlobeCoordinatesValue value) throws InvalidWikibaseValueException {
+    Stream<Claim> mapGlobeCoordinatesValue(GlobeCoordinatesValue value, RejectionCounter rejections) {
         if (!value.getGlobe().equals(GlobeCoordinatesValue.GLOBE_EARTH)) {
+            rejections.reject(RejectionCounter.Reason.UNSUPPORTED_VALUE);
             return Stream.empty(); //TODO: support other globes
         }
 
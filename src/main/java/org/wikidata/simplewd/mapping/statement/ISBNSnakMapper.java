@@ -28,10 +28,11 @@ import java.util.stream.Stream;
 class ISBNSnakMapper implements StringSnakMapper {
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         String ISBN = ISBNValidator.getInstance().validate(value.getString());
         if (ISBN == null) {
-            throw new InvalidWikibaseValueException(value.getString() + " is an invalid ISBN");
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
         return Stream.of(new Claim("isbn", ISBN));
     }
@@ -28,10 +28,11 @@ import java.util.stream.Stream;
 class ISSNSnakMapper implements StringSnakMapper {
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         String ISSN = (String) ISSNValidator.getInstance().validate(value.getString());
         if (ISSN == null) {
-            throw new InvalidWikibaseValueException(value.getString() + " is an invalid ISSN");
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
         return Stream.of(new Claim("issn", ISSN));
     }
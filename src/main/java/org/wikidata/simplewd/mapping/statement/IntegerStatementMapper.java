@@ -34,18 +34,17 @@ class IntegerStatementMapper implements QuantitySnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapQuantityValue(QuantityValue value) throws InvalidWikibaseValueException {
-        if (!isNullOrZero(value.getLowerBound()) || !isNullOrZero(value.getUpperBound())) {
-            throw new InvalidWikibaseValueException(value + " has not null precision bounds.");
+    public Stream<Claim> mapQuantityValue(QuantityValue value, RejectionCounter rejections) {
+        if (!isNullOrZero(value.getLowerBound()) || !isNullOrZero(value.getUpperBound()) || !value.getUnit().isEmpty()) {
+            rejections.reject(RejectionCounter.Reason.UNSUPPORTED_VALUE);
+            return Stream.empty();
         }
-        if (!value.getUnit().isEmpty()) {
-            throw new InvalidWikibaseValueException(value + " has a unit.");
-        }
-        try {
-            return Stream.of(new Claim(targetFieldName, value.getNumericValue().toBigIntegerExact()));
-        } catch (ArithmeticException e) {
-            throw new InvalidWikibaseValueException(value + " is not an integer.");
+        BigDecimal numericValue = value.getNumericValue();
+        if (numericValue.signum() != 0 && numericValue.stripTrailingZeros().scale() > 0) {
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
+        return Stream.of(new Claim(targetFieldName, numericValue.toBigInteger()));
     }
 
     private boolean isNullOrZero(BigDecimal value) {
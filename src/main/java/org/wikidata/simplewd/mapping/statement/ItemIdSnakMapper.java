@@ -29,16 +29,17 @@ import java.util.stream.Stream;
 interface ItemIdSnakMapper extends SnakMapper {
 
     @Override
-    default Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException {
+    default Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections) {
         Value value = snak.getValue();
         if (value == null) {
             return Stream.empty();
         }
         if (!(value instanceof ItemIdValue)) {
-            throw new InvalidWikibaseValueException(value + " should be a ItemIdValue");
+            rejections.reject(RejectionCounter.Reason.UNEXPECTED_VALUE_TYPE);
+            return Stream.empty();
         }
-        return mapItemIdValue((ItemIdValue) value);
+        return mapItemIdValue((ItemIdValue) value, rejections);
     }
 
-    Stream<Claim> mapItemIdValue(ItemIdValue value) throws InvalidWikibaseValueException;
+    Stream<Claim> mapItemIdValue(ItemIdValue value, RejectionCounter rejections);
 }
@@ -20,19 +20,29 @@ import com.google.common.collect.ImmutableMap;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 /**
  * @author Thomas Pellissier Tanon
  */
 public class MapperRegistry {
 
-    private Map<PropertyIdValue, StatementMapper> mapperForProperty = new HashMap<>();
+    private final Map<Integer, StatementMapper> mapperForProperty = new HashMap<>();
+    /**
+     * Mappers indexed by the numeric id of their property, built from {@link #mapperForProperty}
+     */
+    private final StatementMapper[] mappers;
+    private final BitSet mappedProperties = new BitSet();
+    private final Map<String, RejectionCounter> rejectionCounters = new HashMap<>();
 
     public MapperRegistry() {
         buildMappers();
+        mappers = new StatementMapper[mappedProperties.length()];
+        mapperForProperty.forEach((propertyNumber, mapper) -> mappers[propertyNumber] = mapper);
     }
 
     private void buildMappers() {
@@ -171,19 +181,88 @@ public class MapperRegistry {
     }
 
     private void addTruthyMapping(String propertyId, SnakMapper mainSnakMapper) {
-        mapperForProperty.put(Datamodel.makeWikidataPropertyIdValue(propertyId), new TruthyStatementMapper(mainSnakMapper));
+        addMapping(propertyId, new TruthyStatementMapper(mainSnakMapper, getRejectionCounter(propertyId)));
     }
 
     private void addRoleMapping(String propertyId, String targetRelation) {
-        FullStatementMapper fullStatementMapper = new FullStatementMapper(targetRelation, new SimpleItemIdSnakMapper(targetRelation));
-        fullStatementMapper.addQualifierMapper(Datamodel.makeWikidataPropertyIdValue("P453"), new SimpleItemIdSnakMapper("character")); //TODO: not in schema.org schema (but characterName is)
-        fullStatementMapper.addQualifierMapper(Datamodel.makeWikidataPropertyIdValue("P580"), new TimeSnakMapper("startDate"));
-        fullStatementMapper.addQualifierMapper(Datamodel.makeWikidataPropertyIdValue("P582"), new TimeSnakMapper("endDate"));
-        mapperForProperty.put(Datamodel.makeWikidataPropertyIdValue(propertyId), fullStatementMapper);
+        FullStatementMapper fullStatementMapper = new FullStatementMapper(
+                targetRelation, new SimpleItemIdSnakMapper(targetRelation), getRejectionCounter(propertyId)
+        );
+        addQualifierMapping(fullStatementMapper, "P453", new SimpleItemIdSnakMapper("character")); //TODO: not in schema.org schema (but characterName is)
+        addQualifierMapping(fullStatementMapper, "P580", new TimeSnakMapper("startDate"));
+        addQualifierMapping(fullStatementMapper, "P582", new TimeSnakMapper("endDate"));
+        addMapping(propertyId, fullStatementMapper);
     }
 
+    private void addQualifierMapping(FullStatementMapper statementMapper, String propertyId, SnakMapper snakMapper) {
+        statementMapper.addQualifierMapper(
+                Datamodel.makeWikidataPropertyIdValue(propertyId), snakMapper, getRejectionCounter(propertyId)
+        );
+    }
+
+    private RejectionCounter getRejectionCounter(String propertyId) {
+        return rejectionCounters.computeIfAbsent(propertyId, k -> new RejectionCounter());
+    }
+
+    /**
+     * @return for each property with rejected values, the number of values rejected by the mappers for each reason
+     */
+    public Map<String, Map<String, Long>> getRejectionCounts() {
+        Map<String, Map<String, Long>> counts = new TreeMap<>();
+        rejectionCounters.forEach((propertyId, counter) -> {
+            Map<String, Long> propertyCounts = counter.getCounts();
+            if (!propertyCounts.isEmpty()) {
+                counts.put(propertyId, propertyCounts);
+            }
+        });
+        return counts;
+    }
+
+    private void addMapping(String propertyId, StatementMapper mapper) {
+        int propertyNumber = getPropertyNumber(propertyId);
+        if (propertyNumber < 0) {
+            throw new IllegalArgumentException("Invalid property id: " + propertyId);
+        }
+        mapperForProperty.put(propertyNumber, mapper);
+        mappedProperties.set(propertyNumber);
+    }
 
     public Optional<StatementMapper> getMapperForProperty(PropertyIdValue propertyId) {
-        return Optional.ofNullable(mapperForProperty.get(propertyId));
+        return getMapperForProperty(propertyId.getId());
+    }
+
+    public Optional<StatementMapper> getMapperForProperty(String propertyId) {
+        return isMappedProperty(propertyId)
+                ? Optional.of(mappers[getPropertyNumber(propertyId)])
+                : Optional.empty();
+    }
+
+    /**
+     * @param propertyId a property id like P31
+     * @return if the property has a mapper. Does not allocate.
+     */
+    public boolean isMappedProperty(String propertyId) {
+        int propertyNumber = getPropertyNumber(propertyId);
+        return propertyNumber >= 0 && mappedProperties.get(propertyNumber);
+    }
+
+    /**
+     * @return the numeric part of the property id or -1 if it is not a valid property id.
+     * The ids with leading zeros like P031 are not valid.
+     */
+    private static int getPropertyNumber(String propertyId) {
+        int length = propertyId.length();
+        if (length < 2 || length > 10 || propertyId.charAt(0) != 'P' || propertyId.charAt(1) == '0') {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 1; i < length; i++) {
+            char c = propertyId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
     }
 }
@@ -39,7 +39,7 @@ class NameAsStringSnakMapper implements StringSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         EntityValue entity = new EntityValue("_:" + UUID.nameUUIDFromBytes(value.toString().getBytes()));
         entity.addTypes(types);
         entity.addClaim(new Claim("name", value.getString(), MULTILINGUAL));
@@ -29,16 +29,17 @@ import java.util.stream.Stream;
 interface QuantitySnakMapper extends SnakMapper {
 
     @Override
-    default Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException {
+    default Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections) {
         Value value = snak.getValue();
         if (value == null) {
             return Stream.empty();
         }
         if (!(value instanceof QuantityValue)) {
-            throw new InvalidWikibaseValueException(value + " should be a QuantityValue");
+            rejections.reject(RejectionCounter.Reason.UNEXPECTED_VALUE_TYPE);
+            return Stream.empty();
         }
-        return mapQuantityValue((QuantityValue) value);
+        return mapQuantityValue((QuantityValue) value, rejections);
     }
 
-    Stream<Claim> mapQuantityValue(QuantityValue value) throws InvalidWikibaseValueException;
+    Stream<Claim> mapQuantityValue(QuantityValue value, RejectionCounter rejections);
 }
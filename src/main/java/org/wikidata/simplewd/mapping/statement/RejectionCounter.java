@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.mapping.statement;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the values of a property that are not mapped because they are invalid or not supported.
+ * <p>
+ * The mappers report these values through this counter and return no claim instead of throwing an exception,
+ * so that rejecting a value does not allocate anything.
+ */
+class RejectionCounter {
+
+    enum Reason {
+        UNEXPECTED_VALUE_TYPE("unexpectedValueType"),
+        INVALID_VALUE("invalidValue"),
+        UNSUPPORTED_VALUE("unsupportedValue");
+
+        private final String name;
+
+        Reason(String name) {
+            this.name = name;
+        }
+    }
+
+    private final LongAdder[] counts = new LongAdder[Reason.values().length];
+
+    RejectionCounter() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    void reject(Reason reason) {
+        counts[reason.ordinal()].increment();
+    }
+
+    long getCount(Reason reason) {
+        return counts[reason.ordinal()].sum();
+    }
+
+    /**
+     * @return the number of rejected values for each reason with at least one rejection
+     */
+    Map<String, Long> getCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Reason reason : Reason.values()) {
+            long count = getCount(reason);
+            if (count > 0) {
+                result.put(reason.name, count);
+            }
+        }
+        return result;
+    }
+}
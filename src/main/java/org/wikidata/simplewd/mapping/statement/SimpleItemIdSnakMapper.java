@@ -34,7 +34,7 @@ class SimpleItemIdSnakMapper implements ItemIdSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapItemIdValue(ItemIdValue value) throws InvalidWikibaseValueException {
-        return Stream.of(new Claim(targetFieldName, new EntityIdValue(value.getIri())));
+    public Stream<Claim> mapItemIdValue(ItemIdValue value, RejectionCounter rejections) {
+        return Stream.of(new Claim(targetFieldName, EntityIdValue.of(value.getIri())));
     }
 }
@@ -40,9 +40,10 @@ class SimpleStringSnakMapper implements StringSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         if (pattern != null && !pattern.matcher(value.getString()).matches()) {
-            throw new InvalidWikibaseValueException(value + " is not a valid string value. It does not matches the pattern " + pattern);
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
         return Stream.of(new Claim(targetFieldName, value.getString()));
     }
@@ -25,5 +25,8 @@ import java.util.stream.Stream;
  * @author Thomas Pellissier Tanon
  */
 interface SnakMapper {
-    Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException;
+    /**
+     * @param rejections counter of the property of the snak, used to report the values that are not mapped
+     */
+    Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections);
 }
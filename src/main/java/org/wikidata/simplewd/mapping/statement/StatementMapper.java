@@ -25,7 +25,7 @@ import java.util.stream.Stream;
  * @author Thomas Pellissier Tanon
  */
 public interface StatementMapper {
-    Stream<Claim> mapStatement(Statement statement) throws InvalidWikibaseValueException;
+    Stream<Claim> mapStatement(Statement statement);
 
     boolean onlyBestRank();
 }
@@ -29,16 +29,17 @@ import java.util.stream.Stream;
 interface StringSnakMapper extends SnakMapper {
 
     @Override
-    default Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException {
+    default Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections) {
         Value value = snak.getValue();
         if (value == null) {
             return Stream.empty();
         }
         if (!(value instanceof StringValue)) {
-            throw new InvalidWikibaseValueException(value + " should be a StringValue");
+            rejections.reject(RejectionCounter.Reason.UNEXPECTED_VALUE_TYPE);
+            return Stream.empty();
         }
-        return mapStringValue((StringValue) value);
+        return mapStringValue((StringValue) value, rejections);
     }
 
-    Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException;
+    Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections);
 }
@@ -17,15 +17,11 @@
 package org.wikidata.simplewd.mapping.statement;
 
 import org.wikidata.simplewd.model.Claim;
+import org.wikidata.simplewd.model.value.CalendarValue;
 import org.wikidata.wdtk.datamodel.interfaces.Snak;
 import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
 import org.wikidata.wdtk.datamodel.interfaces.Value;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeConstants;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
-import java.math.BigInteger;
 import java.util.stream.Stream;
 
 /**
@@ -33,16 +29,6 @@ import java.util.stream.Stream;
  */
 class TimeSnakMapper implements SnakMapper {
 
-    private static DatatypeFactory DATATYPE_FACTORY;
-
-    static {
-        try {
-            DATATYPE_FACTORY = DatatypeFactory.newInstance();
-        } catch (DatatypeConfigurationException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private String targetFieldName;
 
     TimeSnakMapper(String targetFieldName) {
@@ -50,58 +36,57 @@ class TimeSnakMapper implements SnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapSnak(Snak snak) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapSnak(Snak snak, RejectionCounter rejections) {
         Value value = snak.getValue();
         if (value == null) {
             return Stream.empty();
         }
         if (!(value instanceof TimeValue)) {
-            throw new InvalidWikibaseValueException(value + " should be a TimeValue");
+            rejections.reject(RejectionCounter.Reason.UNEXPECTED_VALUE_TYPE);
+            return Stream.empty();
         }
-        return mapTimeValue((TimeValue) value);
+        return mapTimeValue((TimeValue) value, rejections);
     }
 
-    private Stream<Claim> mapTimeValue(TimeValue value) throws InvalidWikibaseValueException {
-        return convertTimeValue(value).map(calendarValue ->
+    private Stream<Claim> mapTimeValue(TimeValue value, RejectionCounter rejections) {
+        return convertTimeValue(value, rejections).map(calendarValue ->
                 new Claim(targetFieldName, calendarValue)
         );
     }
 
-    private Stream<XMLGregorianCalendar> convertTimeValue(TimeValue value) throws InvalidWikibaseValueException {
+    private Stream<CalendarValue> convertTimeValue(TimeValue value, RejectionCounter rejections) {
         if (value.getBeforeTolerance() != 0 || value.getAfterTolerance() != 0) {
-            throw new InvalidWikibaseValueException("Time values with before/after tolerances are not supported.");
+            rejections.reject(RejectionCounter.Reason.UNSUPPORTED_VALUE); //Time values with before/after tolerances
+            return Stream.empty();
         }
 
-        BigInteger year;
-        int month = DatatypeConstants.FIELD_UNDEFINED;
-        int day = DatatypeConstants.FIELD_UNDEFINED;
-        int hour = DatatypeConstants.FIELD_UNDEFINED;
-        int minute = DatatypeConstants.FIELD_UNDEFINED;
-        int second = DatatypeConstants.FIELD_UNDEFINED;
-        int timezone = DatatypeConstants.FIELD_UNDEFINED;
+        CalendarValue.Precision precision;
         switch (value.getPrecision()) {
             case TimeValue.PREC_SECOND:
-                timezone = 0;
-                second = value.getSecond();
-                minute = value.getMinute();
-                hour = value.getHour();
+                precision = CalendarValue.Precision.SECOND;
+                break;
             case TimeValue.PREC_HOUR:
             case TimeValue.PREC_MINUTE:
             case TimeValue.PREC_DAY:
-                day = value.getDay();
+                precision = CalendarValue.Precision.DAY;
+                break;
             case TimeValue.PREC_MONTH:
-                month = value.getMonth();
+                precision = CalendarValue.Precision.MONTH;
+                break;
             case TimeValue.PREC_YEAR:
-                year = BigInteger.valueOf(value.getYear());
+                precision = CalendarValue.Precision.YEAR;
                 break;
             default:
-                return Stream.empty(); //TODO: Precision not supported. We ignore the value.
+                rejections.reject(RejectionCounter.Reason.UNSUPPORTED_VALUE); //TODO: Precision not supported
+                return Stream.empty();
         }
 
-        try {
-            return Stream.of(DATATYPE_FACTORY.newXMLGregorianCalendar(year, month, day, hour, minute, second, null, timezone));
-        } catch (IllegalArgumentException e) {
-            throw new InvalidWikibaseValueException("Calendar value not supported by Java", e);
+        if (!CalendarValue.isValid(value.getYear(), value.getMonth(), value.getDay(), value.getHour(), value.getMinute(), value.getSecond(), precision)) {
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
+        return Stream.of(new CalendarValue(
+                value.getYear(), value.getMonth(), value.getDay(), value.getHour(), value.getMinute(), value.getSecond(), precision
+        ));
     }
 }
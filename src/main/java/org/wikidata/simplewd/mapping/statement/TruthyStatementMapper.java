@@ -27,14 +27,16 @@ import java.util.stream.Stream;
 class TruthyStatementMapper implements StatementMapper {
 
     private SnakMapper mainSnakMapper;
+    private RejectionCounter rejections;
 
-    TruthyStatementMapper(SnakMapper mainSnakMapper) {
+    TruthyStatementMapper(SnakMapper mainSnakMapper, RejectionCounter rejections) {
         this.mainSnakMapper = mainSnakMapper;
+        this.rejections = rejections;
     }
 
     @Override
-    public Stream<Claim> mapStatement(Statement statement) throws InvalidWikibaseValueException {
-        return mainSnakMapper.mapSnak(statement.getClaim().getMainSnak());
+    public Stream<Claim> mapStatement(Statement statement) {
+        return mainSnakMapper.mapSnak(statement.getClaim().getMainSnak(), rejections);
     }
 
     @Override
@@ -16,26 +16,29 @@
 
 package org.wikidata.simplewd.mapping.statement;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Sets;
-import org.dataloader.DataLoader;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.wikidata.simplewd.api.RequestBatcher;
 import org.wikidata.simplewd.api.WikidataAPI;
 import org.wikidata.simplewd.model.Claim;
-import org.wikidata.simplewd.model.DataLoaderBuilder;
-import org.wikidata.simplewd.model.value.ConstantValue;
+import org.wikidata.simplewd.model.ItemIds;
+import org.wikidata.simplewd.model.value.TypeSetValue;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
 
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -44,7 +47,7 @@ import java.util.stream.Stream;
  */
 public class TypeMapper implements ItemIdSnakMapper {
 
-    private static final Set<ItemIdValue> FILTERED_TYPES = Sets.newHashSet(
+    static final Set<ItemIdValue> FILTERED_TYPES = Sets.newHashSet(
             Datamodel.makeWikidataItemIdValue("Q17379835"),  //Wikimedia page outside the main knowledge tree
             Datamodel.makeWikidataItemIdValue("Q17442446"), //Wikimedia internal stuff
             Datamodel.makeWikidataItemIdValue("Q4167410"), //disambiguation page
@@ -53,7 +56,7 @@ public class TypeMapper implements ItemIdSnakMapper {
             Datamodel.makeWikidataItemIdValue("Q18340514")  //article about events in a specific year or time period
     );
 
-    private static final Map<ItemIdValue, List<String>> SCHEMA_TYPES = new HashMap<>();
+    static final Map<ItemIdValue, List<String>> SCHEMA_TYPES = new HashMap<>();
     private static final Logger LOGGER = LoggerFactory.getLogger(TypeMapper.class);
     private static final TypeMapper INSTANCE = new TypeMapper();
 
@@ -164,62 +167,35 @@ public class TypeMapper implements ItemIdSnakMapper {
         SCHEMA_TYPES.put(Datamodel.makeWikidataItemIdValue("Q27108230"), Arrays.asList("Place", "CivicStructure", "Organization", "LocalBusiness", "LodgingBusiness", "Campground"));
     }
 
-    private DataLoader<ItemIdValue, List<ItemIdValue>> superClassesLoader = DataLoaderBuilder.newDataLoader((itemIds ->
-            CompletableFuture.supplyAsync(() -> {
-                try {
-                    Map<String, EntityDocument> documents = WikidataAPI.getDataFetcher().getEntityDocuments(
-                            itemIds.stream().map(ItemIdValue::getId).toArray(String[]::new)
-                    );
-                    return itemIds.stream().map(itemId -> {
-                        EntityDocument document = documents.get(itemId.getId());
-                        if (document instanceof ItemDocument) {
-                            ItemDocument itemDocument = (ItemDocument) document;
-                            StatementGroup statementGroup = itemDocument.findStatementGroup("P279");
-                            if (statementGroup != null) {
-                                return statementGroup.getStatements().stream()
-                                        .map(Statement::getValue)
-                                        .flatMap(value -> {
-                                            if (value instanceof ItemIdValue) {
-                                                return Stream.of(((ItemIdValue) value));
-                                            } else {
-                                                return Stream.empty();
-                                            }
-                                        }).collect(Collectors.toList());
-                            }
-                        } else {
-                            LOGGER.error("Found something that is not an item from an item id: " + itemId.toString());
-                        }
-                        return Collections.<ItemIdValue>emptyList();
-                    }).collect(Collectors.toList());
-                } catch (MediaWikiApiErrorException e) {
-                    LOGGER.error("Wikidata API error: " + e.getMessage(), e);
-                    return itemIds.stream().map(itemId -> Collections.<ItemIdValue>emptyList()).collect(Collectors.toList());
-                }
-            })
-    ), 32768, 30);
+    private static final Map<Long, TypeSetValue> SCHEMA_TYPE_SETS = new HashMap<>();
+    private static final Set<Long> FILTERED_CLASSES = new HashSet<>();
+    private static final long[] NO_CLASSES = new long[0];
+
+    static {
+        SCHEMA_TYPES.forEach((mappedClass, schemaTypes) -> SCHEMA_TYPE_SETS.put(ItemIds.fromId(mappedClass), TypeSetValue.of(schemaTypes)));
+        FILTERED_TYPES.forEach(filteredClass -> FILTERED_CLASSES.add(ItemIds.fromId(filteredClass)));
+    }
+
+    private final RequestBatcher<Long, long[]> superClassesBatcher = new RequestBatcher<>(
+            "superclasses", TypeMapper::retrieveSuperClasses, 50, 5, TimeUnit.MILLISECONDS, 4
+    );
 
-    private LoadingCache<ItemIdValue, Set<String>> classMappingCache = CacheBuilder.newBuilder()
+    private final Cache<Long, CompletableFuture<long[]>> superClassesCache = CacheBuilder.newBuilder()
+            .maximumSize(32768)
+            .expireAfterWrite(30, TimeUnit.DAYS)
+            .build();
+
+    private final Cache<Long, CompletableFuture<TypeSetValue>> classMappingCache = CacheBuilder.newBuilder()
             .maximumSize(16384) //TODO: configure?
             .expireAfterWrite(30, TimeUnit.DAYS)
-            .build(new CacheLoader<ItemIdValue, Set<String>>() {
-                @Override
-                public Set<String> load(ItemIdValue itemId) throws IOException {
-                    return getAllSuperClasses(itemId)
-                            .flatMap(itemIdV -> SCHEMA_TYPES.getOrDefault(itemIdV, Collections.emptyList()).stream())
-                            .collect(Collectors.toSet());
-                }
-            });
+            .build();
 
-    private LoadingCache<ItemIdValue, Boolean> filteredClassesCache = CacheBuilder.newBuilder()
+    private final Cache<Long, CompletableFuture<Boolean>> filteredClassesCache = CacheBuilder.newBuilder()
             .maximumSize(16384) //TODO: configure?
             .expireAfterWrite(30, TimeUnit.DAYS)
-            .build(new CacheLoader<ItemIdValue, Boolean>() {
-                @Override
-                public Boolean load(ItemIdValue itemId) throws IOException {
-                    return getAllSuperClasses(itemId).anyMatch(FILTERED_TYPES::contains);
-                }
-            });
+            .build();
 
+    private Optional<ClassHierarchyIndex> classHierarchyIndex = Optional.empty();
 
     private TypeMapper() {
     }
@@ -228,52 +204,175 @@ public class TypeMapper implements ItemIdSnakMapper {
         return INSTANCE;
     }
 
+    /**
+     * Sets the precomputed hierarchy used instead of the Wikidata API for the classes it covers
+     */
+    public void setClassHierarchyIndex(ClassHierarchyIndex classHierarchyIndex) {
+        this.classHierarchyIndex = Optional.of(classHierarchyIndex);
+    }
+
+    /**
+     * Only uses the hierarchy that is already known, the mapping never waits for the Wikidata API.
+     * Wait for {@link #mapClassAsync(ItemIdValue)} before mapping to get the types of all classes.
+     */
     @Override
-    public Stream<Claim> mapItemIdValue(ItemIdValue value) throws InvalidWikibaseValueException {
-        return mapClass(value).stream()
-                .map(type -> new Claim("@type", new ConstantValue(type)));
+    public Stream<Claim> mapItemIdValue(ItemIdValue value, RejectionCounter rejections) {
+        TypeSetValue types = mapResolvedClass(value);
+        return types.isEmpty() ? Stream.empty() : Stream.of(new Claim("@type", types));
     }
 
-    private Set<String> mapClass(ItemIdValue itemId) {
+    /**
+     * @return the types of the class if they are already known. If not, their retrieval is started in background.
+     */
+    private TypeSetValue mapResolvedClass(ItemIdValue itemId) {
+        CompletableFuture<TypeSetValue> types = mapClassAsync(itemId);
+        if (!types.isDone()) {
+            LOGGER.warn("The types of the class " + itemId.getId() + " are not resolved yet, they are not mapped");
+            return TypeSetValue.EMPTY;
+        }
         try {
-            return classMappingCache.get(itemId);
-        } catch (ExecutionException e) {
+            return types.join();
+        } catch (CompletionException e) {
             LOGGER.error(e.getMessage(), e);
-            return Collections.emptySet();
+            return TypeSetValue.EMPTY;
         }
     }
 
-    public boolean isFilteredClass(ItemIdValue itemId) {
-        try {
-            return filteredClassesCache.get(itemId);
-        } catch (ExecutionException e) {
-            LOGGER.error(e.getMessage(), e);
-            return false;
+    /**
+     * @return the schema.org types of the instances of the given class
+     */
+    public CompletableFuture<TypeSetValue> mapClassAsync(ItemIdValue itemId) {
+        long classNumber = ItemIds.fromId(itemId);
+        Optional<ClassHierarchyIndex> index = getCoveringIndex(classNumber);
+        if (index.isPresent()) {
+            return CompletableFuture.completedFuture(index.get().getSchemaTypes(classNumber));
         }
+        return getFromCache(classMappingCache, classNumber, () -> getAllSuperClasses(classNumber).thenApply(superClasses ->
+                superClasses.stream()
+                        .map(superClass -> SCHEMA_TYPE_SETS.getOrDefault(superClass, TypeSetValue.EMPTY))
+                        .reduce(TypeSetValue.EMPTY, TypeSetValue::union)
+        ));
     }
 
-    private Stream<ItemIdValue> getAllSuperClasses(ItemIdValue itemId) {
-        CompletableFuture<Set<ItemIdValue>> superClasses = getAllSuperClasses(Collections.singleton(itemId), new HashSet<>());
-        superClassesLoader.dispatchAndJoin();
-        try {
-            return superClasses.get().stream();
-        } catch (InterruptedException | ExecutionException e) {
-            LOGGER.error(e.getMessage(), e);
-            return Stream.empty();
+    public CompletableFuture<Boolean> isFilteredClassAsync(ItemIdValue itemId) {
+        long classNumber = ItemIds.fromId(itemId);
+        Optional<ClassHierarchyIndex> index = getCoveringIndex(classNumber);
+        if (index.isPresent()) {
+            return CompletableFuture.completedFuture(index.get().isFiltered(classNumber));
+        }
+        return getFromCache(filteredClassesCache, classNumber, () -> getAllSuperClasses(classNumber).thenApply(superClasses ->
+                superClasses.stream().anyMatch(FILTERED_CLASSES::contains)
+        ));
+    }
+
+    private Optional<ClassHierarchyIndex> getCoveringIndex(long classNumber) {
+        return classHierarchyIndex.filter(index -> index.covers(classNumber));
+    }
+
+    /**
+     * Forgets the super classes of the given class and the type mappings that may depend on them
+     */
+    public void invalidateClass(long classNumber) {
+        if (superClassesCache.getIfPresent(classNumber) == null) {
+            return; //Not part of the hierarchies we have loaded
         }
+        superClassesCache.invalidate(classNumber);
+        classMappingCache.invalidateAll();
+        filteredClassesCache.invalidateAll();
+    }
+
+    private CompletableFuture<Set<Long>> getAllSuperClasses(long classNumber) {
+        return getAllSuperClasses(Collections.singleton(classNumber), new HashSet<>());
     }
 
-    private CompletableFuture<Set<ItemIdValue>> getAllSuperClasses(Set<ItemIdValue> classes, Set<ItemIdValue> seenClasses) {
-        return superClassesLoader.loadMany(new ArrayList<>(classes)).thenCompose(superClassesLists -> {
+    private CompletableFuture<Set<Long>> getAllSuperClasses(Set<Long> classes, Set<Long> seenClasses) {
+        List<CompletableFuture<long[]>> superClassesLists = classes.stream()
+                .map(this::getSuperClasses)
+                .collect(Collectors.toList());
+        return CompletableFuture.allOf(superClassesLists.toArray(new CompletableFuture<?>[0])).thenCompose(ignored -> {
             seenClasses.addAll(classes);
-            Set<ItemIdValue> superClasses = superClassesLists.stream()
-                    .flatMap(Collection::stream)
-                    .filter(superClass -> !seenClasses.contains(superClass))
-                    .collect(Collectors.toSet());
+            Set<Long> superClasses = new HashSet<>();
+            for (CompletableFuture<long[]> superClassesList : superClassesLists) {
+                for (long superClass : superClassesList.join()) {
+                    if (!seenClasses.contains(superClass)) {
+                        superClasses.add(superClass);
+                    }
+                }
+            }
             if (superClasses.isEmpty()) {
                 return CompletableFuture.completedFuture(seenClasses);
             }
             return getAllSuperClasses(superClasses, seenClasses);
         });
     }
+
+    private CompletableFuture<long[]> getSuperClasses(long classNumber) {
+        return getFromCache(superClassesCache, classNumber, () ->
+                superClassesBatcher.loadAsync(Collections.singleton(classNumber))
+                        .thenApply(superClasses -> superClasses.getOrDefault(classNumber, NO_CLASSES))
+        );
+    }
+
+    /**
+     * Returns the cached future or starts the computation. The failed computations are removed from the cache.
+     */
+    private static <V> CompletableFuture<V> getFromCache(Cache<Long, CompletableFuture<V>> cache, long key, Supplier<CompletableFuture<V>> computation) {
+        try {
+            CompletableFuture<V> future = cache.get(key, computation::get);
+            future.whenComplete((value, e) -> {
+                if (e != null) {
+                    cache.asMap().remove(key, future);
+                }
+            });
+            return future;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            CompletableFuture<V> future = new CompletableFuture<>();
+            future.completeExceptionally(e.getCause());
+            return future;
+        }
+    }
+
+    /**
+     * Batches are split to isolate the classes that do not exist. The other failures are reported
+     * so that nothing is cached for the classes of the batch.
+     */
+    private static Map<Long, long[]> retrieveSuperClasses(List<Long> classNumbers) throws IOException {
+        Map<String, EntityDocument> documents;
+        try {
+            documents = WikidataAPI.getDataFetcher().getEntityDocuments(
+                    classNumbers.stream().map(ItemIds::toId).toArray(String[]::new)
+            );
+        } catch (NoSuchEntityErrorException e) {
+            //At least one class does not exist, we split the batch in two halves to isolate it
+            if (classNumbers.size() == 1) {
+                return Collections.emptyMap();
+            }
+            Map<Long, long[]> superClasses = new HashMap<>(retrieveSuperClasses(classNumbers.subList(0, classNumbers.size() / 2)));
+            superClasses.putAll(retrieveSuperClasses(classNumbers.subList(classNumbers.size() / 2, classNumbers.size())));
+            return superClasses;
+        } catch (MediaWikiApiErrorException e) {
+            throw new IOException("Wikidata API error: " + e.getMessage(), e);
+        }
+        if (documents == null || documents.isEmpty()) {
+            throw new IOException("The retrieval of " + classNumbers.size() + " classes from the Wikidata API failed");
+        }
+
+        Map<Long, long[]> superClasses = new HashMap<>();
+        for (long classNumber : classNumbers) {
+            EntityDocument document = documents.get(ItemIds.toId(classNumber));
+            if (document instanceof ItemDocument) {
+                StatementGroup statementGroup = ((ItemDocument) document).findStatementGroup("P279");
+                if (statementGroup != null) {
+                    superClasses.put(classNumber, statementGroup.getStatements().stream()
+                            .map(Statement::getValue)
+                            .filter(value -> value instanceof ItemIdValue)
+                            .mapToLong(value -> ItemIds.fromId((ItemIdValue) value))
+                            .toArray());
+                }
+            } else {
+                LOGGER.error("Found something that is not an item from an item id: " + ItemIds.toId(classNumber));
+            }
+        }
+        return superClasses;
+    }
 }
@@ -35,7 +35,7 @@ class URIStatementMapper implements StringSnakMapper {
     }
 
     @Override
-    public Stream<Claim> mapStringValue(StringValue value) throws InvalidWikibaseValueException {
+    public Stream<Claim> mapStringValue(StringValue value, RejectionCounter rejections) {
         try {
             URI parsedURL = new URI(value.getString()).normalize();
             if ((parsedURL.getScheme().equals("http") || parsedURL.getScheme().equals("https")) && parsedURL.getPath().isEmpty()) {
@@ -43,7 +43,8 @@ class URIStatementMapper implements StringSnakMapper {
             }
             return Stream.of(new Claim(targetFieldName, parsedURL));
         } catch (URISyntaxException e) {
-            throw new InvalidWikibaseValueException(value + " is an invalid URI", e);
+            rejections.reject(RejectionCounter.Reason.INVALID_VALUE);
+            return Stream.empty();
         }
     }
 }
@@ -22,13 +22,20 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import java.math.BigInteger;
 import java.net.URI;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class Claim {
+    /**
+     * Interned property names, indexed by their reduced and full forms
+     */
+    private static final ConcurrentMap<String, String> PROPERTY_NAMES = new ConcurrentHashMap<>();
+
     private String property;
     private Value value;
 
     public Claim(String property, Value value) {
-        this.property = Namespaces.reduce(property);
+        this.property = internPropertyName(property);
         this.value = value;
     }
 
@@ -45,7 +52,7 @@ public class Claim {
     }
 
     public Claim(String property, XMLGregorianCalendar value) {
-        this(property, new CalendarValue(value));
+        this(property, new CalendarValue(value.toXMLFormat()));
     }
 
     public Claim(String property, URI value) {
@@ -60,6 +67,19 @@ public class Claim {
         this(property, new IntegerValue(value));
     }
 
+    private static String internPropertyName(String property) {
+        String name = PROPERTY_NAMES.get(property);
+        if (name == null) {
+            String reduced = Namespaces.reduce(property);
+            name = PROPERTY_NAMES.putIfAbsent(reduced, reduced);
+            if (name == null) {
+                name = reduced;
+            }
+            PROPERTY_NAMES.putIfAbsent(property, name);
+        }
+        return name;
+    }
+
     public String getProperty() {
         return property;
     }
@@ -17,26 +17,71 @@
 package org.wikidata.simplewd.model;
 
 import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.simplewd.model.value.LocaleStringValue;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * Lookup of the Wikidata items by item number (42 for Q42, see {@link ItemIds}).
+ */
 public interface EntityLookup {
 
-    default Optional<EntityValue> getEntityForIRI(String id) throws IOException {
-        return Optional.ofNullable(getEntitiesForIRI(id).get(id));
+    default Optional<EntityValue> getEntity(long itemNumber) throws IOException {
+        return Optional.ofNullable(getEntities(itemNumber).get(itemNumber));
+    }
+
+    /**
+     * Same as {@link #getEntity(long)} but the returned entity has its values in the languages of the locale filter
+     * if the lookup only keeps some languages.
+     */
+    default Optional<EntityValue> getEntity(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        return getEntity(itemNumber);
     }
 
     /**
-     * @return Map indexed by reduced IRI
+     * @return Map indexed by item number
      */
-    default Map<String, EntityValue> getEntitiesForIRI(String... ids) throws IOException {
-        Map<String, EntityValue> entities = new HashMap<>();
-        for (String id : ids) {
-            getEntityForIRI(id).ifPresent(entity -> entities.put(Namespaces.reduce(id), entity));
+    default Map<Long, EntityValue> getEntities(long... itemNumbers) throws IOException {
+        Map<Long, EntityValue> entities = new HashMap<>();
+        for (long itemNumber : itemNumbers) {
+            getEntity(itemNumber).ifPresent(entity -> entities.put(itemNumber, entity));
         }
         return entities;
     }
+
+    default Optional<EntityValue> getShallowEntity(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        return Optional.ofNullable(getShallowEntities(localeFilter, itemNumber).get(itemNumber));
+    }
+
+    /**
+     * Returns the entities with at least their name, description, types and image in the languages of the locale filter.
+     * Used to display the entities referenced by an other entity.
+     *
+     * @return Map indexed by item number
+     */
+    default Map<Long, EntityValue> getShallowEntities(LocaleFilter localeFilter, long... itemNumbers) throws IOException {
+        return getEntities(itemNumbers);
+    }
+
+    /**
+     * @return the names of the entity in the best language of the locale filter
+     */
+    default Stream<LocaleStringValue> getBestLabels(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        return getShallowEntity(localeFilter, itemNumber)
+                .map(entity -> localeFilter.getBestValues(entity.getValues("name")))
+                .orElseGet(Stream::empty);
+    }
+
+    /**
+     * @return the descriptions of the entity in the best language of the locale filter
+     */
+    default Stream<LocaleStringValue> getBestDescriptions(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        return getShallowEntity(localeFilter, itemNumber)
+                .map(entity -> localeFilter.getBestValues(entity.getValues("description")))
+                .orElseGet(Stream::empty);
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.model;
+
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+
+/**
+ * Numeric representation of the Wikidata item ids (Q42 is 42) used as key of the lookup caches and stores.
+ * <p>
+ * The ids are parsed once without regular expression. Ids with leading zeros are rejected so that the numeric
+ * representation is canonical.
+ */
+public final class ItemIds {
+
+    /**
+     * Returned when the parsed string is not an item id
+     */
+    public static final long NOT_AN_ITEM = -1;
+
+    private static final String PREFIX = "wd:";
+    private static final int MAX_DIGITS = 18;
+
+    private ItemIds() {
+    }
+
+    /**
+     * @param iri reduced (wd:Q42) or full IRI
+     * @return the item number or {@link #NOT_AN_ITEM}
+     */
+    public static long fromIRI(String iri) {
+        if (iri.startsWith(PREFIX)) {
+            return parse(iri, PREFIX.length());
+        }
+        String namespace = Namespaces.NAMESPACES.get("wd");
+        if (iri.startsWith(namespace)) {
+            return parse(iri, namespace.length());
+        }
+        return NOT_AN_ITEM;
+    }
+
+    /**
+     * @param id Wikidata id like Q42
+     * @return the item number or {@link #NOT_AN_ITEM}
+     */
+    public static long fromId(String id) {
+        return parse(id, 0);
+    }
+
+    public static long fromId(ItemIdValue itemId) {
+        return Long.parseLong(itemId.getId().substring(1));
+    }
+
+    /**
+     * @return the reduced IRI like wd:Q42
+     */
+    public static String toIRI(long itemNumber) {
+        return PREFIX + toId(itemNumber);
+    }
+
+    /**
+     * @return the Wikidata id like Q42
+     */
+    public static String toId(long itemNumber) {
+        return "Q" + itemNumber;
+    }
+
+    private static long parse(String id, int start) {
+        int digitCount = id.length() - start - 1;
+        if (digitCount < 1 || digitCount > MAX_DIGITS || id.charAt(start) != 'Q' || id.charAt(start + 1) == '0') {
+            return NOT_AN_ITEM;
+        }
+        long itemNumber = 0;
+        for (int i = start + 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_AN_ITEM;
+            }
+            itemNumber = itemNumber * 10 + (c - '0');
+        }
+        return itemNumber;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.model;
+
+import org.wikidata.wdtk.datamodel.interfaces.WikimediaLanguageCodes;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Conversion of the BCP 47 language ranges of the requests to the Wikimedia language codes used by Wikidata
+ * (e.g. sr-Latn is sr-el).
+ * <p>
+ * The known codes are the ones of {@link WikimediaLanguageCodes}, listed in wikimedia-language-codes.tsv, and mul.
+ * Some languages have several codes (e.g. gsw and als): Wikidata has terms with each of them so they are all returned.
+ */
+public final class LanguageCodes {
+
+    private static final String MULTILINGUAL = "mul";
+    private static final String WIKIMEDIA_CODES_RESOURCE = "wikimedia-language-codes.tsv";
+    /**
+     * Wikimedia language codes indexed by their lowercased BCP 47 tags
+     */
+    private static final Map<String, Set<String>> WIKIMEDIA_CODES = readWikimediaCodes();
+
+    private LanguageCodes() {
+    }
+
+    /**
+     * @param languageRange a BCP 47 language range without wildcard
+     * @return the Wikimedia language codes of the range, none if Wikidata does not have this language
+     */
+    public static Set<String> toWikimediaCodes(String languageRange) {
+        //Deprecated and grandfathered tags (e.g. iw or zh-yue) are replaced by their preferred value
+        String tag = Locale.forLanguageTag(languageRange).toLanguageTag().toLowerCase(Locale.ROOT);
+        if (tag.equals(MULTILINGUAL)) {
+            return Collections.singleton(MULTILINGUAL);
+        }
+        return WIKIMEDIA_CODES.getOrDefault(tag, Collections.emptySet());
+    }
+
+    /**
+     * @return the Wikimedia codes of the same language as the given code, including it
+     */
+    public static Set<String> getEquivalentCodes(String code) {
+        try {
+            Set<String> codes = toWikimediaCodes(WikimediaLanguageCodes.getLanguageCode(code));
+            if (codes.contains(code)) {
+                return codes;
+            }
+        } catch (IllegalArgumentException e) {
+            //Not a Wikimedia language code
+        }
+        return Collections.singleton(code);
+    }
+
+    /**
+     * @return if Wikidata has terms in this Wikimedia language code
+     */
+    public static boolean isWikimediaCode(String code) {
+        if (code.equals(MULTILINGUAL)) {
+            return true;
+        }
+        try {
+            WikimediaLanguageCodes.getLanguageCode(code);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wikidata Toolkit only exposes the conversion from the Wikimedia codes: the reverse table is built from a copy of
+     * its table shipped as resource.
+     *
+     * @throws IllegalStateException if the resource is missing or invalid
+     */
+    private static Map<String, Set<String>> readWikimediaCodes() {
+        InputStream input = LanguageCodes.class.getResourceAsStream(WIKIMEDIA_CODES_RESOURCE);
+        if (input == null) {
+            throw new IllegalStateException("The resource " + WIKIMEDIA_CODES_RESOURCE + " is missing");
+        }
+        Map<String, Set<String>> codes = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\t");
+                if (parts.length != 2) {
+                    throw new IllegalStateException("Invalid line in " + WIKIMEDIA_CODES_RESOURCE + ": " + line);
+                }
+                codes.computeIfAbsent(parts[1].toLowerCase(Locale.ROOT), k -> new TreeSet<>()).add(parts[0]);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("The resource " + WIKIMEDIA_CODES_RESOURCE + " could not be read", e);
+        }
+        codes.replaceAll((tag, tagCodes) -> Collections.unmodifiableSet(tagCodes));
+        return codes;
+    }
+}
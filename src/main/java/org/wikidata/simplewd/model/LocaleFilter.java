@@ -20,10 +20,12 @@ import org.wikidata.simplewd.model.value.LocaleStringValue;
 import org.wikidata.simplewd.model.value.Value;
 
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 public class LocaleFilter {
     private static final Locale MULTILINGUAL = Locale.forLanguageTag("mul");
+    private static final Pattern EXTENDED_LANGUAGE_RANGE = Pattern.compile("^[a-z]{2,3}-[a-z]{3}(-.*)?$");
 
     private List<Locale.LanguageRange> priorityList;
 
@@ -31,7 +33,7 @@ public class LocaleFilter {
         priorityList = Locale.LanguageRange.parse(localRanges);
     }
 
-    public Stream<LocaleStringValue> getBestValues(Stream<Value> values) {
+    public Stream<LocaleStringValue> getBestValues(Stream<? extends Value> values) {
         Set<Locale> availableLocales = new HashSet<>();
         LocaleStringValue[] localeValues = values
                 .filter(value -> value instanceof LocaleStringValue)
@@ -46,6 +48,37 @@ public class LocaleFilter {
         return !Locale.filter(priorityList, Collections.singletonList(MULTILINGUAL)).isEmpty();
     }
 
+    /**
+     * @return the Wikimedia language codes of the values that might be selected by this filter or nothing if all
+     * languages might be used. The ranges without Wikidata language (e.g. en-US) are represented by their closest
+     * more generic language (e.g. en).
+     */
+    public Optional<Set<String>> getLanguageCodes() {
+        if (isMultilingualAccepted()) {
+            return Optional.empty();
+        }
+        Set<String> languageCodes = new HashSet<>();
+        for (Locale.LanguageRange languageRange : priorityList) {
+            String range = languageRange.getRange();
+            if (range.contains("*")) {
+                return Optional.empty();
+            }
+            //The ranges without Wikidata language fall back to their closest more generic language.
+            //The extended language ranges (e.g. zh-nan) are not more specific than the equivalent ranges added by the parser.
+            Set<String> codes = LanguageCodes.toWikimediaCodes(range);
+            int minEnd = 0;
+            if (EXTENDED_LANGUAGE_RANGE.matcher(range).matches()) {
+                int extendedLanguageEnd = range.indexOf('-', range.indexOf('-') + 1);
+                minEnd = (extendedLanguageEnd == -1) ? range.length() : extendedLanguageEnd - 1;
+            }
+            for (int end = range.lastIndexOf('-'); codes.isEmpty() && end > minEnd; end = range.lastIndexOf('-', end - 1)) {
+                codes = LanguageCodes.toWikimediaCodes(range.substring(0, end));
+            }
+            languageCodes.addAll(codes);
+        }
+        return Optional.of(languageCodes);
+    }
+
     public Locale getBestLocale() {
         return Locale.lookup(priorityList, Arrays.asList(Locale.getAvailableLocales()));
     }
@@ -14,85 +14,271 @@
  * limitations under the License.
  */
 
+
 package org.wikidata.simplewd.model.value;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeConstants;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
-import javax.xml.namespace.QName;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Date or date time value stored as primitive fields.
+ * <p>
+ * Its XML Schema lexical form is computed once and used for the JSON and RDF serializations.
+ *
  * @author Thomas Pellissier Tanon
  */
 public class CalendarValue implements Value {
 
-    private static DatatypeFactory DATATYPE_FACTORY;
+    private static final Pattern LEXICAL_FORM_PATTERN = Pattern.compile(
+            "^(-?\\d{4,})(?:-(\\d{2})(?:-(\\d{2})(?:T(\\d{2}):(\\d{2}):(\\d{2})(?:\\.\\d+)?)?)?)?(Z|[+-]\\d{2}:\\d{2})?$"
+    );
+    private static final int NO_TIMEZONE = Integer.MIN_VALUE;
+
+    public enum Precision {
+        YEAR("year", "gYear"),
+        MONTH("month", "gYearMonth"),
+        DAY("day", "date"),
+        SECOND("second", "dateTime");
+
+        private final String name;
+        private final String xsdDatatype;
 
-    static {
-        try {
-            DATATYPE_FACTORY = DatatypeFactory.newInstance();
-        } catch (DatatypeConfigurationException e) {
-            throw new RuntimeException(e);
+        Precision(String name, String xsdDatatype) {
+            this.name = name;
+            this.xsdDatatype = xsdDatatype;
         }
     }
 
-    private XMLGregorianCalendar value;
+    private final long year;
+    private final byte month;
+    private final byte day;
+    private final byte hour;
+    private final byte minute;
+    private final byte second;
+    private final int timezoneOffset;
+    private final Precision precision;
+    private String lexicalForm;
+
+    /**
+     * The fields more precise than the precision are ignored. The date times are in UTC.
+     *
+     * @throws IllegalArgumentException if the date is not valid
+     */
+    public CalendarValue(long year, int month, int day, int hour, int minute, int second, Precision precision) {
+        this(year, month, day, hour, minute, second, (precision == Precision.SECOND) ? 0 : NO_TIMEZONE, precision, null);
+    }
+
+    /**
+     * @param lexicalForm a xsd:gYear, xsd:gYearMonth, xsd:date or xsd:dateTime lexical form
+     * @throws IllegalArgumentException if the lexical form is not valid
+     */
+    public CalendarValue(String lexicalForm) {
+        this(LEXICAL_FORM_PATTERN.matcher(lexicalForm), lexicalForm);
+    }
+
+    private CalendarValue(Matcher matcher, String lexicalForm) {
+        this(
+                parseYear(matcher, lexicalForm),
+                parseField(matcher, 2),
+                parseField(matcher, 3),
+                parseField(matcher, 4),
+                parseField(matcher, 5),
+                parseField(matcher, 6),
+                parseTimezoneOffset(matcher.group(7)),
+                (matcher.group(4) != null) ? Precision.SECOND : (matcher.group(3) != null) ? Precision.DAY : (matcher.group(2) != null) ? Precision.MONTH : Precision.YEAR,
+                lexicalForm
+        );
+    }
+
+    private CalendarValue(long year, int month, int day, int hour, int minute, int second, int timezoneOffset, Precision precision, String lexicalForm) {
+        if (!isValid(year, month, day, hour, minute, second, precision)) {
+            throw new IllegalArgumentException("Invalid date: " + year + "-" + month + "-" + day + "T" + hour + ":" + minute + ":" + second);
+        }
+        boolean hasMonth = precision != Precision.YEAR;
+        boolean hasDay = precision == Precision.DAY || precision == Precision.SECOND;
+        boolean hasTime = precision == Precision.SECOND;
+        this.year = year;
+        this.month = (byte) (hasMonth ? month : 0);
+        this.day = (byte) (hasDay ? day : 0);
+        this.hour = (byte) (hasTime ? hour : 0);
+        this.minute = (byte) (hasTime ? minute : 0);
+        this.second = (byte) (hasTime ? second : 0);
+        this.timezoneOffset = timezoneOffset;
+        this.precision = precision;
+        this.lexicalForm = lexicalForm;
+    }
+
+    /**
+     * @return if the constructor accepts these fields. The fields more precise than the precision are ignored.
+     */
+    public static boolean isValid(long year, int month, int day, int hour, int minute, int second, Precision precision) {
+        if (year == 0) {
+            return false; //The year 0 does not exist in XML Schema
+        }
+        boolean hasMonth = precision != Precision.YEAR;
+        boolean hasDay = precision == Precision.DAY || precision == Precision.SECOND;
+        boolean hasTime = precision == Precision.SECOND;
+        return !((hasMonth && (month < 1 || month > 12)) || (hasDay && (day < 1 || day > 31)) ||
+                (hasTime && (hour < 0 || hour > 24 || minute < 0 || minute > 59 || second < 0 || second > 60)));
+    }
+
+    private static long parseYear(Matcher matcher, String lexicalForm) {
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Invalid XML Schema date: " + lexicalForm);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static int parseField(Matcher matcher, int group) {
+        return (matcher.group(group) == null) ? 0 : Integer.parseInt(matcher.group(group));
+    }
+
+    private static int parseTimezoneOffset(String timezone) {
+        if (timezone == null) {
+            return NO_TIMEZONE;
+        } else if (timezone.equals("Z")) {
+            return 0;
+        }
+        int offset = Integer.parseInt(timezone.substring(1, 3)) * 60 + Integer.parseInt(timezone.substring(4, 6));
+        return (timezone.charAt(0) == '-') ? -offset : offset;
+    }
+
+    @JsonIgnore
+    public long getYear() {
+        return year;
+    }
+
+    @JsonIgnore
+    public int getMonth() {
+        return month;
+    }
+
+    @JsonIgnore
+    public int getDay() {
+        return day;
+    }
+
+    @JsonIgnore
+    public int getHour() {
+        return hour;
+    }
 
-    public CalendarValue(XMLGregorianCalendar value) {
-        this.value = value;
+    @JsonIgnore
+    public int getMinute() {
+        return minute;
     }
 
-    public CalendarValue(String value) {
-        this(DATATYPE_FACTORY.newXMLGregorianCalendar(value));
+    @JsonIgnore
+    public int getSecond() {
+        return second;
+    }
+
+    @JsonIgnore
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return the local name of the XML Schema datatype of the value (e.g. gYear or dateTime)
+     */
+    @JsonIgnore
+    public String getXsdDatatype() {
+        return precision.xsdDatatype;
     }
 
     @Override
     @JsonProperty("precision")
     public String getType() {
-        QName datatype = value.getXMLSchemaType();
-        if (datatype.equals(DatatypeConstants.DATETIME)) {
-            return "second";
-        } else if (datatype.equals(DatatypeConstants.DATE)) {
-            return "day";
-        } else if (datatype.equals(DatatypeConstants.GYEARMONTH)) {
-            return "month";
-        } else if (datatype.equals(DatatypeConstants.GYEAR)) {
-            return "year";
-        } else {
-            return "xsd:" + datatype.getLocalPart();
-        }
+        return precision.name;
     }
 
     @Override
     @JsonIgnore
-    public XMLGregorianCalendar getValue() {
-        return value;
+    public String getValue() {
+        return toString();
     }
 
     @Override
     @JsonProperty("value")
     public String toString() {
-        return value.toXMLFormat();
+        if (lexicalForm == null) {
+            lexicalForm = buildLexicalForm();
+        }
+        return lexicalForm;
+    }
+
+    private String buildLexicalForm() {
+        StringBuilder builder = new StringBuilder(25);
+        if (year < 0) {
+            builder.append('-');
+        }
+        appendPadded(builder, Math.abs(year), 4);
+        if (precision != Precision.YEAR) {
+            appendPadded(builder.append('-'), month, 2);
+        }
+        if (precision == Precision.DAY || precision == Precision.SECOND) {
+            appendPadded(builder.append('-'), day, 2);
+        }
+        if (precision == Precision.SECOND) {
+            appendPadded(builder.append('T'), hour, 2);
+            appendPadded(builder.append(':'), minute, 2);
+            appendPadded(builder.append(':'), second, 2);
+        }
+        if (timezoneOffset == 0) {
+            builder.append('Z');
+        } else if (timezoneOffset != NO_TIMEZONE) {
+            builder.append((timezoneOffset < 0) ? '-' : '+');
+            appendPadded(builder, Math.abs(timezoneOffset) / 60, 2);
+            appendPadded(builder.append(':'), Math.abs(timezoneOffset) % 60, 2);
+        }
+        return builder.toString();
+    }
+
+    private static void appendPadded(StringBuilder builder, long value, int length) {
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < length; i++) {
+            builder.append('0');
+        }
+        builder.append(digits);
     }
 
     @Override
     public int hashCode() {
-        return value.hashCode();
+        return Long.hashCode(year) ^ (month << 24) ^ (day << 16) ^ (hour << 12) ^ (minute << 6) ^ second ^ (31 * timezoneOffset);
     }
 
+    /**
+     * Compares the fields and not the lexical forms: 2000-01-01T00:00:00Z and 2000-01-01T00:00:00+00:00 are equal
+     */
     @Override
     public boolean equals(Object value) {
-        return (value instanceof CalendarValue) && ((CalendarValue) value).value.equals(value);
+        if (!(value instanceof CalendarValue)) {
+            return false;
+        }
+        CalendarValue other = (CalendarValue) value;
+        return year == other.year && month == other.month && day == other.day && hour == other.hour &&
+                minute == other.minute && second == other.second && timezoneOffset == other.timezoneOffset &&
+                precision == other.precision;
     }
 
     @Override
     public int compareTo(Value o) {
         if (o instanceof CalendarValue) {
-            return value.compare(((CalendarValue) o).value);
+            CalendarValue other = (CalendarValue) o;
+            int result = Long.compare(year, other.year);
+            if (result == 0) {
+                result = Integer.compare(month, other.month);
+            }
+            if (result == 0) {
+                result = Integer.compare(day, other.day);
+            }
+            if (result == 0) {
+                result = Integer.compare(hour * 3600 + minute * 60 + second, other.hour * 3600 + other.minute * 60 + other.second);
+            }
+            return result;
         } else {
             return toString().compareTo(o.toString());
         }
@@ -20,15 +20,32 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonValue;
 import org.wikidata.simplewd.model.Namespaces;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
+ * Constants are flyweights: use {@link #of(String)} to get them.
+ *
  * @author Thomas Pellissier Tanon
  */
 public class ConstantValue implements Value {
 
+    private static final ConcurrentMap<String, ConstantValue> CONSTANTS = new ConcurrentHashMap<>();
+
     private String IRI;
 
-    public ConstantValue(String IRI) {
-        this.IRI = Namespaces.reduce(IRI);
+    private ConstantValue(String IRI) {
+        this.IRI = IRI;
+    }
+
+    public static ConstantValue of(String IRI) {
+        ConstantValue constant = CONSTANTS.get(IRI);
+        if (constant != null) {
+            return constant;
+        }
+        constant = CONSTANTS.computeIfAbsent(Namespaces.reduce(IRI), ConstantValue::new);
+        CONSTANTS.putIfAbsent(IRI, constant);
+        return constant;
     }
 
     @Override
@@ -55,6 +72,6 @@ public class ConstantValue implements Value {
 
     @Override
     public boolean equals(Object value) {
-        return (value instanceof ConstantValue) && ((ConstantValue) value).IRI.equals(value);
+        return (value instanceof ConstantValue) && ((ConstantValue) value).IRI.equals(IRI);
     }
 }
@@ -18,17 +18,31 @@ package org.wikidata.simplewd.model.value;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.wikidata.simplewd.model.ItemIds;
 import org.wikidata.simplewd.model.Namespaces;
 
 /**
+ * Entity ids are flyweights: use {@link #of(String)} to get them.
+ * They are weakly interned so that the ids that are not referenced anymore are garbage collected.
+ *
  * @author Thomas Pellissier Tanon
  */
 public class EntityIdValue implements Value {
 
+    private static final Interner<EntityIdValue> INTERNER = Interners.newWeakInterner();
+
     private String IRI;
+    private long itemNumber;
+
+    private EntityIdValue(String IRI) {
+        this.IRI = IRI;
+        this.itemNumber = ItemIds.fromIRI(IRI);
+    }
 
-    public EntityIdValue(String IRI) {
-        this.IRI = Namespaces.reduce(IRI);
+    public static EntityIdValue of(String IRI) {
+        return INTERNER.intern(new EntityIdValue(Namespaces.reduce(IRI)));
     }
 
     @Override
@@ -37,6 +51,14 @@ public class EntityIdValue implements Value {
         return IRI;
     }
 
+    /**
+     * @return the number of the Wikidata item (42 for wd:Q42) or {@link ItemIds#NOT_AN_ITEM}
+     */
+    @JsonIgnore
+    public long getItemNumber() {
+        return itemNumber;
+    }
+
     @Override
     @JsonIgnore
     public String getType() {
@@ -55,6 +77,6 @@ public class EntityIdValue implements Value {
 
     @Override
     public boolean equals(Object value) {
-        return (value instanceof EntityIdValue) && ((EntityIdValue) value).IRI.equals(value);
+        return (value instanceof EntityIdValue) && ((EntityIdValue) value).IRI.equals(IRI);
     }
 }
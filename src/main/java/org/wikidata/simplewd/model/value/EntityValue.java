@@ -19,17 +19,34 @@ package org.wikidata.simplewd.model.value;
 import org.wikidata.simplewd.model.Claim;
 import org.wikidata.simplewd.model.Namespaces;
 
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 
 public class EntityValue implements Value {
+    /**
+     * Ordinals of the property names used by the frozen entities, attributed in the order of first use
+     */
+    private static final ConcurrentMap<String, Character> PROPERTY_ORDINALS = new ConcurrentHashMap<>();
+    private static volatile String[] propertyNames = new String[0];
+
     private String IRI;
-    private Set<String> types = new HashSet<>();
-    private Set<Claim> claims = new HashSet<>();
+    private TypeSetValue types = TypeSetValue.EMPTY;
+    /**
+     * The claim values indexed by property, without duplicates. Null once the entity is frozen.
+     */
+    private Map<String, ValueList> claims = new HashMap<>();
+    /**
+     * Frozen layout: the values of the property with the ordinal frozenPropertyOrdinals[i] are
+     * frozenValues[frozenOffsets[i]] to frozenValues[frozenOffsets[i+1] - 1]
+     */
+    private char[] frozenPropertyOrdinals;
+    private int[] frozenOffsets;
+    private Value[] frozenValues;
+    private Set<String> frozenPropertySet;
 
     public EntityValue(String IRI) {
         this.IRI = Namespaces.reduce(IRI);
@@ -43,46 +60,170 @@ public class EntityValue implements Value {
         return types.stream();
     }
 
+    public TypeSetValue getTypeSet() {
+        return types;
+    }
+
+    public boolean hasType(String typeIRI) {
+        return types.contains(typeIRI);
+    }
+
     public void addType(String typeIRI) {
-        types.add(Namespaces.reduce(typeIRI));
+        addTypes(TypeSetValue.of(typeIRI));
     }
 
     public void addTypes(String... typeIRIs) {
-        for (String typeIRI : typeIRIs) {
-            addType(typeIRI);
-        }
+        addTypes(TypeSetValue.of(typeIRIs));
+    }
+
+    public void addTypes(TypeSetValue typeSet) {
+        checkNotFrozen();
+        types = types.union(typeSet);
     }
 
 
     public Stream<Claim> getClaims() {
-        return claims.stream();
+        if (claims == null) {
+            String[] names = propertyNames;
+            return IntStream.range(0, frozenPropertyOrdinals.length).boxed().flatMap(i ->
+                    Arrays.stream(frozenValues, frozenOffsets[i], frozenOffsets[i + 1])
+                            .map(value -> new Claim(names[frozenPropertyOrdinals[i]], value))
+            );
+        }
+        return claims.entrySet().stream().flatMap(entry ->
+                entry.getValue().stream().map(value -> new Claim(entry.getKey(), value))
+        );
     }
 
     public Set<String> getProperties() {
-        return claims.stream().map(Claim::getProperty).collect(Collectors.toSet());
+        if (claims == null) {
+            if (frozenPropertySet == null) {
+                frozenPropertySet = new FrozenPropertySet();
+            }
+            return frozenPropertySet;
+        }
+        return Collections.unmodifiableSet(claims.keySet());
     }
 
     public Optional<Value> getValue(String property) {
-        return claims.stream().filter(claim -> claim.getProperty().equals(property)).findAny().map(Claim::getValue);
+        if (claims == null) {
+            int position = getFrozenPosition(property);
+            return (position < 0) ? Optional.empty() : Optional.of(frozenValues[frozenOffsets[position]]);
+        }
+        ValueList values = claims.get(property);
+        return (values == null) ? Optional.empty() : Optional.of(values.values[0]);
     }
 
     public Stream<Value> getValues(String property) {
-        return claims.stream().filter(claim -> claim.getProperty().equals(property)).map(Claim::getValue);
+        if (claims == null) {
+            int position = getFrozenPosition(property);
+            return (position < 0)
+                    ? Stream.empty()
+                    : Arrays.stream(frozenValues, frozenOffsets[position], frozenOffsets[position + 1]);
+        }
+        ValueList values = claims.get(property);
+        return (values == null) ? Stream.empty() : values.stream();
     }
 
     public boolean hasValueFor(String property) {
-        return claims.stream().anyMatch(claim -> claim.getProperty().equals(property));
+        if (claims == null) {
+            return getFrozenPosition(property) >= 0;
+        }
+        return claims.containsKey(property);
+    }
+
+    /**
+     * Converts the entity and the entities it contains into a read-only layout.
+     * The claims are stored in three arrays sorted by property ordinal instead of a hash map of arrays.
+     * <p>
+     * The entity must not be modified after this call.
+     *
+     * @return this entity
+     */
+    public EntityValue freeze() {
+        if (claims == null) {
+            return this;
+        }
+        char[] ordinals = new char[claims.size()];
+        int count = 0;
+        for (String property : claims.keySet()) {
+            ordinals[count++] = getPropertyOrdinal(property);
+        }
+        Arrays.sort(ordinals);
+        String[] names = propertyNames;
+        String[] properties = new String[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            properties[i] = names[ordinals[i]];
+        }
+        int[] offsets = new int[properties.length + 1];
+        for (int i = 0; i < properties.length; i++) {
+            offsets[i + 1] = offsets[i] + claims.get(properties[i]).size;
+        }
+        Value[] values = new Value[offsets[properties.length]];
+        for (int i = 0; i < properties.length; i++) {
+            ValueList propertyValues = claims.get(properties[i]);
+            for (int j = 0; j < propertyValues.size; j++) {
+                if (propertyValues.values[j] instanceof EntityValue) {
+                    ((EntityValue) propertyValues.values[j]).freeze();
+                }
+            }
+            System.arraycopy(propertyValues.values, 0, values, offsets[i], propertyValues.size);
+        }
+        frozenPropertyOrdinals = ordinals;
+        frozenOffsets = offsets;
+        frozenValues = values;
+        claims = null;
+        return this;
+    }
+
+    private int getFrozenPosition(String property) {
+        Character ordinal = PROPERTY_ORDINALS.get(property);
+        return (ordinal == null) ? -1 : Arrays.binarySearch(frozenPropertyOrdinals, ordinal);
+    }
+
+    private static char getPropertyOrdinal(String property) {
+        Character ordinal = PROPERTY_ORDINALS.get(property);
+        return (ordinal == null) ? addPropertyOrdinal(property) : ordinal;
+    }
+
+    private static synchronized char addPropertyOrdinal(String property) {
+        Character ordinal = PROPERTY_ORDINALS.get(property);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        String[] names = propertyNames;
+        if (names.length > Character.MAX_VALUE) {
+            throw new IllegalStateException("Too many property names to freeze " + property);
+        }
+        String[] newNames = Arrays.copyOf(names, names.length + 1);
+        newNames[names.length] = property;
+        propertyNames = newNames;
+        PROPERTY_ORDINALS.put(property, (char) names.length);
+        return (char) names.length;
+    }
+
+    public boolean isFrozen() {
+        return claims == null;
+    }
+
+    private void checkNotFrozen() {
+        if (claims == null) {
+            throw new IllegalStateException("The entity " + IRI + " is frozen");
+        }
     }
 
     public void addClaim(Claim claim) {
+        checkNotFrozen();
         if (claim.getProperty().equals("@type")) {
-            if (claim.getValue() instanceof ConstantValue) {
-                types.add(claim.getValue().toString());
+            if (claim.getValue() instanceof TypeSetValue) {
+                addTypes((TypeSetValue) claim.getValue());
+            } else if (claim.getValue() instanceof ConstantValue) {
+                addType(claim.getValue().toString());
             } else {
-                throw new IllegalArgumentException("The range of rdf:type is ConstantValue");
+                throw new IllegalArgumentException("The range of rdf:type is ConstantValue or TypeSetValue");
             }
         } else {
-            claims.add(claim);
+            claims.computeIfAbsent(claim.getProperty(), property -> new ValueList()).add(claim.getValue());
         }
     }
 
@@ -114,4 +255,63 @@ public class EntityValue implements Value {
     public boolean equals(Object value) {
         return (value instanceof EntityValue) && ((EntityValue) value).IRI.equals(value);
     }
+
+    /**
+     * The values of a property while the entity is built.
+     * The duplicates are found with a linear scan of the first values and then with a hash set, dropped by freeze().
+     */
+    private static final class ValueList {
+        private static final int LINEAR_SCAN_LIMIT = 8;
+
+        private Value[] values = new Value[1];
+        private int size = 0;
+        private Set<Value> valueSet;
+
+        private void add(Value value) {
+            if (valueSet != null) {
+                if (!valueSet.add(value)) {
+                    return;
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (values[i].equals(value)) {
+                        return;
+                    }
+                }
+                if (size == LINEAR_SCAN_LIMIT) {
+                    valueSet = new HashSet<>(Arrays.asList(values).subList(0, size));
+                    valueSet.add(value);
+                }
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        private Stream<Value> stream() {
+            return Arrays.stream(values, 0, size);
+        }
+    }
+
+    /**
+     * Read-only view on the properties of a frozen entity
+     */
+    private final class FrozenPropertySet extends AbstractSet<String> {
+        @Override
+        public Iterator<String> iterator() {
+            String[] names = propertyNames;
+            return IntStream.range(0, frozenPropertyOrdinals.length).mapToObj(i -> names[frozenPropertyOrdinals[i]]).iterator();
+        }
+
+        @Override
+        public int size() {
+            return frozenPropertyOrdinals.length;
+        }
+
+        @Override
+        public boolean contains(Object property) {
+            return (property instanceof String) && hasValueFor((String) property);
+        }
+    }
 }
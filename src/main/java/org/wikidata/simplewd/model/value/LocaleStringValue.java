@@ -19,30 +19,46 @@ package org.wikidata.simplewd.model.value;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Thomas Pellissier Tanon
  */
 public class LocaleStringValue implements Value {
 
-    private String value;
+    /**
+     * The languages are interned: all the values in the same language share the same locale and language tag
+     */
+    private static final ConcurrentMap<Locale, Language> LANGUAGES = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Language> LANGUAGES_BY_TAG = new ConcurrentHashMap<>();
 
-    private Locale locale;
+    /**
+     * UTF-8 encoded: the cached entities mostly contain strings in this class
+     */
+    private byte[] value;
+
+    private Language language;
 
     public LocaleStringValue(String value, Locale locale) {
-        this.value = value;
-        this.locale = locale;
+        this.value = value.getBytes(StandardCharsets.UTF_8);
+        this.language = LANGUAGES.computeIfAbsent(locale, Language::new);
     }
 
     public LocaleStringValue(String value, String languageCode) {
-        this(value, Locale.forLanguageTag(languageCode));
+        this.value = value.getBytes(StandardCharsets.UTF_8);
+        this.language = LANGUAGES_BY_TAG.computeIfAbsent(languageCode, tag ->
+                LANGUAGES.computeIfAbsent(Locale.forLanguageTag(tag), Language::new)
+        );
     }
 
     @Override
     @JsonProperty("value")
     public String getValue() {
-        return value;
+        return new String(value, StandardCharsets.UTF_8);
     }
 
     @Override
@@ -53,26 +69,37 @@ public class LocaleStringValue implements Value {
 
     @JsonIgnore
     public Locale getLocale() {
-        return locale;
+        return language.locale;
     }
 
     @JsonProperty("language")
     public String getLanguageCode() {
-        return locale.toLanguageTag();
+        return language.tag;
     }
 
     @Override
     public String toString() {
-        return value;
+        return getValue();
     }
 
     @Override
     public int hashCode() {
-        return value.hashCode();
+        return Arrays.hashCode(value);
     }
 
     @Override
-    public boolean equals(Object value) {
-        return (value instanceof LocaleStringValue) && ((LocaleStringValue) value).value.equals(value);
+    public boolean equals(Object other) {
+        return (other instanceof LocaleStringValue) && Arrays.equals(((LocaleStringValue) other).value, value) &&
+                ((LocaleStringValue) other).language == language;
+    }
+
+    private static final class Language {
+        private final Locale locale;
+        private final String tag;
+
+        private Language(Locale locale) {
+            this.locale = locale;
+            this.tag = locale.toLanguageTag();
+        }
     }
 }
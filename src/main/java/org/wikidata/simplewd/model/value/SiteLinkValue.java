@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.model.value;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+
+/**
+ * URI of a page of a MediaWiki site linked from an item.
+ * <p>
+ * Only the site and the page title are stored: the URI is built when it is read for the first time.
+ */
+public final class SiteLinkValue extends URIValue {
+
+    private final Site site;
+    private final String title;
+    private volatile String uri;
+
+    public SiteLinkValue(Site site, String title) {
+        this.site = site;
+        this.title = title;
+    }
+
+    @JsonIgnore
+    public Site getSite() {
+        return site;
+    }
+
+    @JsonIgnore
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public URI getValue() {
+        return URI.create(toString());
+    }
+
+    @Override
+    public String getHost() {
+        return site.host;
+    }
+
+    @Override
+    public String toString() {
+        String uri = this.uri;
+        if (uri == null) {
+            uri = site.urlPrefix + encodeTitle(title) + site.urlSuffix;
+            this.uri = uri;
+        }
+        return uri;
+    }
+
+    @Override
+    public int hashCode() {
+        return site.siteKey.hashCode() ^ title.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object value) {
+        if (!(value instanceof SiteLinkValue)) {
+            return false;
+        }
+        SiteLinkValue other = (SiteLinkValue) value;
+        return site.siteKey.equals(other.site.siteKey) && title.equals(other.title);
+    }
+
+    /**
+     * Same encoding as the one used by Wikidata Toolkit for the MediaWiki sites
+     */
+    private static String encodeTitle(String title) {
+        try {
+            return URLEncoder.encode(title.replace(' ', '_'), "UTF-8").replace("%3A", ":").replace("%2F", "/");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A MediaWiki site with the page URLs of the form urlPrefix + encoded title + urlSuffix
+     */
+    public static final class Site {
+        private final String siteKey;
+        private final String urlPrefix;
+        private final String urlSuffix;
+        private final String host;
+
+        public Site(String siteKey, String urlPrefix, String urlSuffix) {
+            this.siteKey = siteKey;
+            this.urlPrefix = urlPrefix;
+            this.urlSuffix = urlSuffix;
+            this.host = URI.create(urlPrefix).getHost();
+        }
+
+        public String getSiteKey() {
+            return siteKey;
+        }
+    }
+}
@@ -18,21 +18,27 @@ package org.wikidata.simplewd.model.value;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * @author Thomas Pellissier Tanon
  */
 public class StringValue implements Value {
 
-    private String value;
+    /**
+     * UTF-8 encoded
+     */
+    private byte[] value;
 
     public StringValue(String value) {
-        this.value = value;
+        this.value = value.getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
     @JsonProperty("value")
     public String getValue() {
-        return value;
+        return new String(value, StandardCharsets.UTF_8);
     }
 
     @Override
@@ -43,16 +49,16 @@ public class StringValue implements Value {
 
     @Override
     public String toString() {
-        return value;
+        return getValue();
     }
 
     @Override
     public int hashCode() {
-        return value.hashCode();
+        return Arrays.hashCode(value);
     }
 
     @Override
-    public boolean equals(Object value) {
-        return (value instanceof StringValue) && ((StringValue) value).value.equals(value);
+    public boolean equals(Object other) {
+        return (other instanceof StringValue) && Arrays.equals(((StringValue) other).value, value);
     }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.model.value;
+
+import org.wikidata.simplewd.model.Namespaces;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Immutable set of types encoded as a bitset over a table of interned type names.
+ * <p>
+ * The union of two sets is a bitwise OR and the type names are only materialized when the set is read.
+ * The ordinals are attributed at runtime: they must not be persisted.
+ */
+public final class TypeSetValue implements Value {
+
+    private static final Map<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+    private static volatile String[] NAMES = new String[0];
+
+    public static final TypeSetValue EMPTY = new TypeSetValue(new long[0]);
+
+    private final long[] words;
+
+    private TypeSetValue(long[] words) {
+        this.words = words;
+    }
+
+    public static TypeSetValue of(String... typeIRIs) {
+        return of(Arrays.asList(typeIRIs));
+    }
+
+    public static TypeSetValue of(Collection<String> typeIRIs) {
+        long[] words = new long[0];
+        for (String typeIRI : typeIRIs) {
+            int ordinal = getOrdinal(Namespaces.reduce(typeIRI));
+            if ((ordinal >> 6) >= words.length) {
+                words = Arrays.copyOf(words, (ordinal >> 6) + 1);
+            }
+            words[ordinal >> 6] |= 1L << ordinal;
+        }
+        return (words.length == 0) ? EMPTY : new TypeSetValue(words);
+    }
+
+    private static int getOrdinal(String type) {
+        Integer ordinal = ORDINALS.get(type);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (ORDINALS) {
+            return ORDINALS.computeIfAbsent(type, k -> {
+                String[] names = Arrays.copyOf(NAMES, NAMES.length + 1);
+                names[names.length - 1] = k;
+                NAMES = names;
+                return names.length - 1;
+            });
+        }
+    }
+
+    /**
+     * @return the union of the two sets. Returns this set without allocation if it already contains the other one.
+     */
+    public TypeSetValue union(TypeSetValue other) {
+        if (containsAll(other)) {
+            return this;
+        }
+        if (other.containsAll(this)) {
+            return other;
+        }
+        long[] words = Arrays.copyOf(this.words, Math.max(this.words.length, other.words.length));
+        for (int i = 0; i < other.words.length; i++) {
+            words[i] |= other.words[i];
+        }
+        return new TypeSetValue(words);
+    }
+
+    public boolean containsAll(TypeSetValue other) {
+        for (int i = 0; i < other.words.length; i++) {
+            long word = (i < words.length) ? words[i] : 0;
+            if ((other.words[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean contains(String typeIRI) {
+        Integer ordinal = ORDINALS.get(Namespaces.reduce(typeIRI));
+        return ordinal != null && (ordinal >> 6) < words.length && (words[ordinal >> 6] & (1L << ordinal)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Stream<String> stream() {
+        String[] names = NAMES;
+        return IntStream.range(0, words.length * 64)
+                .filter(ordinal -> (words[ordinal >> 6] & (1L << ordinal)) != 0)
+                .mapToObj(ordinal -> names[ordinal]);
+    }
+
+    @Override
+    public Object getValue() {
+        return stream().collect(Collectors.toList());
+    }
+
+    @Override
+    public String getType() {
+        return "@id";
+    }
+
+    @Override
+    public String toString() {
+        return stream().collect(Collectors.joining(" "));
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0) {
+                hash ^= Long.hashCode(words[i]) * (i + 1);
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object value) {
+        return (value instanceof TypeSetValue) && containsAll((TypeSetValue) value) && ((TypeSetValue) value).containsAll(this);
+    }
+}
@@ -37,11 +37,25 @@ public class URIValue implements Value {
         this.value = new URI(value);
     }
 
+    /**
+     * For the subclasses that build the URI lazily
+     */
+    URIValue() {
+    }
+
     @JsonIgnore
     public URI getValue() {
         return value;
     }
 
+    /**
+     * @return the host of the URI, without building the full URI if possible
+     */
+    @JsonIgnore
+    public String getHost() {
+        return getValue().getHost();
+    }
+
     @Override
     @JsonProperty("type")
     public String getType() {
@@ -42,7 +42,7 @@ public class RDFConverter {
         IRI predicate = valueFactory.createIRI(Namespaces.expand(property.getProperty()));
         if (value instanceof CalendarValue) {
             return Stream.of(valueFactory.createStatement(subject, predicate,
-                    valueFactory.createLiteral(((CalendarValue) value).getValue())
+                    valueFactory.createLiteral(value.toString(), valueFactory.createIRI(XMLSchema.NAMESPACE, ((CalendarValue) value).getXsdDatatype()))
             ));
         } else if (value instanceof CommonsFileValue) {
             return Stream.of(valueFactory.createStatement(subject, predicate,
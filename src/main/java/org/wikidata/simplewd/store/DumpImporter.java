@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.simplewd.mapping.ItemMapper;
+import org.wikidata.simplewd.mapping.statement.ClassHierarchyIndex;
+import org.wikidata.simplewd.mapping.statement.ClassHierarchyIndexBuilder;
+import org.wikidata.simplewd.mapping.statement.TypeMapper;
+import org.wikidata.simplewd.model.ItemIds;
+import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.dumpfiles.DumpProcessingController;
+import org.wikidata.wdtk.dumpfiles.MwLocalDumpFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds the store used by {@link LocalEntityLookup} from a Wikidata JSON dump.
+ * <p>
+ * Usage: DumpImporter &lt;dump file or "latest"&gt; &lt;store directory&gt; [class hierarchy index file]
+ * <p>
+ * An {@link ItemIdFilter} and a {@link LabelStore} of the imported items are also written in the store directory.
+ * <p>
+ * The types of the items are mapped with a {@link ClassHierarchyIndex} and not with the Wikidata API. If no index
+ * file is given, the index is built with a first pass on the dump and written in the store directory.
+ */
+public class DumpImporter implements EntityDocumentProcessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DumpImporter.class);
+    private static final long EXPECTED_ITEM_COUNT = 100_000_000;
+    public static final String ITEM_ID_FILTER_FILE = "item-ids.bloom";
+    public static final String LABEL_STORE_DIRECTORY = "labels";
+    public static final String CLASS_HIERARCHY_INDEX_FILE = "class-hierarchy.index";
+
+    private ItemMapper itemMapper;
+    private MappedRecordStore store;
+    private LabelStore labelStore;
+    private ItemIdFilter itemIdFilter;
+    private long importedCount = 0;
+
+    private DumpImporter(ItemMapper itemMapper, MappedRecordStore store, LabelStore labelStore, ItemIdFilter itemIdFilter) {
+        this.itemMapper = itemMapper;
+        this.store = store;
+        this.labelStore = labelStore;
+        this.itemIdFilter = itemIdFilter;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: DumpImporter <dump file or \"latest\"> <store directory> [class hierarchy index file]");
+            System.exit(1);
+        }
+
+        TypeMapper.getInstance().setClassHierarchyIndex(getClassHierarchyIndex(args));
+        DumpProcessingController controller = new DumpProcessingController("wikidatawiki");
+        try (
+                MappedRecordStore store = new MappedRecordStore(Paths.get(args[1]));
+                LabelStore labelStore = new LabelStore(Paths.get(args[1]).resolve(LABEL_STORE_DIRECTORY))
+        ) {
+            DumpImporter importer = new DumpImporter(
+                    new ItemMapper(controller.getSitesInformation()), store, labelStore, new ItemIdFilter(EXPECTED_ITEM_COUNT)
+            );
+            controller.registerEntityDocumentProcessor(importer, null, true);
+            if (args[0].equals("latest")) {
+                controller.processMostRecentJsonDump();
+            } else {
+                controller.processDump(new MwLocalDumpFile(args[0]));
+            }
+            importer.itemIdFilter.writeTo(store.getDirectory().resolve(ITEM_ID_FILTER_FILE));
+            LOGGER.info(importer.importedCount + " items imported into " + args[1]);
+        }
+    }
+
+    private static ClassHierarchyIndex getClassHierarchyIndex(String[] args) throws IOException {
+        if (args.length == 3) {
+            return ClassHierarchyIndex.readFrom(Paths.get(args[2]));
+        }
+        LOGGER.info("Building the class hierarchy index from " + args[0]);
+        ClassHierarchyIndex index = ClassHierarchyIndexBuilder.buildFromDump(args[0]);
+        Path indexFile = Paths.get(args[1]).resolve(CLASS_HIERARCHY_INDEX_FILE);
+        Files.createDirectories(indexFile.getParent());
+        index.writeTo(indexFile);
+        LOGGER.info(index.size() + " classes written to " + indexFile);
+        return index;
+    }
+
+    @Override
+    public void processItemDocument(ItemDocument itemDocument) {
+        try {
+            long itemNumber = ItemIds.fromId(itemDocument.getItemId());
+            itemIdFilter.put(itemNumber);
+            EntityValue entity = itemMapper.map(itemDocument);
+            store.put(itemNumber, EntitySerializer.serialize(entity));
+            labelStore.put(itemNumber, entity);
+            importedCount++;
+            if (importedCount % 100000 == 0) {
+                LOGGER.info(importedCount + " items imported");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Import of " + itemDocument.getItemId().getId() + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void processPropertyDocument(PropertyDocument propertyDocument) {
+        //We only serve items
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+import org.wikidata.simplewd.model.Claim;
+import org.wikidata.simplewd.model.value.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Compact binary serialization of {@link EntityValue}s used by the on-disk stores.
+ */
+public class EntitySerializer {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte CALENDAR = 1;
+    private static final byte COMMONS_FILE = 2;
+    private static final byte CONSTANT = 3;
+    private static final byte ENTITY = 4;
+    private static final byte ENTITY_ID = 5;
+    private static final byte GEO = 6;
+    private static final byte INTEGER = 7;
+    private static final byte LOCALE_STRING = 8;
+    private static final byte STRING = 9;
+    private static final byte URI_VALUE = 10;
+
+    public static byte[] serialize(EntityValue entity) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(outputStream)) {
+            output.writeByte(FORMAT_VERSION);
+            writeEntity(output, entity);
+        }
+        return outputStream.toByteArray();
+    }
+
+    public static EntityValue deserialize(ByteBuffer buffer) throws IOException {
+        try {
+            byte version = buffer.get();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported serialization format version: " + version);
+            }
+            return readEntity(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated entity record", e);
+        }
+    }
+
+    public static EntityValue deserialize(byte[] data) throws IOException {
+        return deserialize(ByteBuffer.wrap(data));
+    }
+
+    private static void writeEntity(DataOutputStream output, EntityValue entity) throws IOException {
+        writeString(output, entity.getIRI());
+        List<String> types = entity.getTypes().collect(Collectors.toList());
+        output.writeInt(types.size());
+        for (String type : types) {
+            writeString(output, type);
+        }
+        List<Claim> claims = entity.getClaims().collect(Collectors.toList());
+        output.writeInt(claims.size());
+        for (Claim claim : claims) {
+            writeString(output, claim.getProperty());
+            writeValue(output, claim.getValue());
+        }
+    }
+
+    private static EntityValue readEntity(ByteBuffer buffer) throws IOException {
+        EntityValue entity = new EntityValue(readString(buffer));
+        int typesCount = buffer.getInt();
+        for (int i = 0; i < typesCount; i++) {
+            entity.addType(readString(buffer));
+        }
+        int claimsCount = buffer.getInt();
+        for (int i = 0; i < claimsCount; i++) {
+            String property = readString(buffer);
+            entity.addClaim(property, readValue(buffer));
+        }
+        return entity.freeze();
+    }
+
+    private static void writeValue(DataOutputStream output, Value value) throws IOException {
+        if (value instanceof CalendarValue) {
+            output.writeByte(CALENDAR);
+            writeString(output, value.toString());
+        } else if (value instanceof CommonsFileValue) {
+            output.writeByte(COMMONS_FILE);
+            writeString(output, value.toString());
+        } else if (value instanceof ConstantValue) {
+            output.writeByte(CONSTANT);
+            writeString(output, value.toString());
+        } else if (value instanceof EntityValue) {
+            output.writeByte(ENTITY);
+            writeEntity(output, (EntityValue) value);
+        } else if (value instanceof EntityIdValue) {
+            output.writeByte(ENTITY_ID);
+            writeString(output, value.toString());
+        } else if (value instanceof GeoValue) {
+            output.writeByte(GEO);
+            writeBytes(output, new WKBWriter().write(((GeoValue) value).getValue()));
+        } else if (value instanceof IntegerValue) {
+            output.writeByte(INTEGER);
+            writeBytes(output, ((IntegerValue) value).getValue().toByteArray());
+        } else if (value instanceof LocaleStringValue) {
+            output.writeByte(LOCALE_STRING);
+            writeString(output, value.toString());
+            writeString(output, ((LocaleStringValue) value).getLanguageCode());
+        } else if (value instanceof StringValue) {
+            output.writeByte(STRING);
+            writeString(output, value.toString());
+        } else if (value instanceof URIValue) {
+            output.writeByte(URI_VALUE);
+            writeString(output, value.toString());
+        } else {
+            throw new IOException("Unsupported value class: " + value.getClass());
+        }
+    }
+
+    private static Value readValue(ByteBuffer buffer) throws IOException {
+        byte tag = buffer.get();
+        switch (tag) {
+            case CALENDAR:
+                return new CalendarValue(readString(buffer));
+            case COMMONS_FILE:
+                return new CommonsFileValue(readString(buffer));
+            case CONSTANT:
+                return ConstantValue.of(readString(buffer));
+            case ENTITY:
+                return readEntity(buffer);
+            case ENTITY_ID:
+                return EntityIdValue.of(readString(buffer));
+            case GEO:
+                try {
+                    return GeoValue.buildGeoValue(new WKBReader().read(readBytes(buffer)));
+                } catch (ParseException e) {
+                    throw new IOException("Invalid geometry", e);
+                }
+            case INTEGER:
+                return new IntegerValue(new BigInteger(readBytes(buffer)));
+            case LOCALE_STRING:
+                String text = readString(buffer);
+                return new LocaleStringValue(text, readString(buffer));
+            case STRING:
+                return new StringValue(readString(buffer));
+            case URI_VALUE:
+                return new URIValue(URI.create(readString(buffer)));
+            default:
+                throw new IOException("Unknown value tag: " + tag);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        writeBytes(output, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream output, byte[] value) throws IOException {
+        output.writeInt(value.length);
+        output.write(value);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return value;
+    }
+}
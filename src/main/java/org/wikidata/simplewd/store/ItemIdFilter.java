@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Bloom filter of the existing item ids used to skip the lookups of unknown ids in the local stores.
+ * <p>
+ * The dumps do not contain the redirects: an id rejected by the filter may still be resolved by the Wikidata API.
+ * <p>
+ * Items created after the filter was built have an id larger than all the ids known by the filter:
+ * they are always considered as possibly existing.
+ */
+public class ItemIdFilter {
+
+    private static final long FILE_MAGIC = 0x5357444249443031L; //SWDBID01
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final BloomFilter<Long> bloomFilter;
+    private long maxItemNumber = 0;
+
+    public ItemIdFilter(long expectedItemCount) {
+        bloomFilter = BloomFilter.create(Funnels.longFunnel(), expectedItemCount, FALSE_POSITIVE_PROBABILITY);
+    }
+
+    private ItemIdFilter(BloomFilter<Long> bloomFilter, long maxItemNumber) {
+        this.bloomFilter = bloomFilter;
+        this.maxItemNumber = maxItemNumber;
+    }
+
+    public synchronized void put(long itemNumber) {
+        bloomFilter.put(itemNumber);
+        maxItemNumber = Math.max(maxItemNumber, itemNumber);
+    }
+
+    /**
+     * @return false if the item with the given numeric id does not exist for sure
+     */
+    public boolean mightExist(long itemNumber) {
+        return itemNumber > maxItemNumber || bloomFilter.mightContain(itemNumber);
+    }
+
+    public synchronized void writeTo(Path file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            output.writeLong(FILE_MAGIC);
+            output.writeLong(maxItemNumber);
+            bloomFilter.writeTo(output);
+        }
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(Path)} or built from a text file with one item id (e.g. Q42) per line.
+     */
+    public static ItemIdFilter readFrom(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readLong() == FILE_MAGIC) {
+                long maxItemNumber = input.readLong();
+                return new ItemIdFilter(BloomFilter.readFrom(input, Funnels.longFunnel()), maxItemNumber);
+            }
+        } catch (EOFException e) {
+            //Too short to be a serialized filter
+        }
+        return readIdList(file);
+    }
+
+    private static ItemIdFilter readIdList(Path file) throws IOException {
+        long lineCount;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            lineCount = reader.lines().count();
+        }
+        ItemIdFilter filter = new ItemIdFilter(Math.max(lineCount, 1));
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("Q")) {
+                    line = line.substring(1);
+                }
+                if (!line.isEmpty()) {
+                    try {
+                        filter.put(Long.parseLong(line));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid item id in " + file + ": " + line);
+                    }
+                }
+            }
+        }
+        return filter;
+    }
+}
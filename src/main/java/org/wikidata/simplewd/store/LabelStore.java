@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wikidata.simplewd.store;
+
+import org.wikidata.simplewd.model.LanguageCodes;
+import org.wikidata.simplewd.model.LocaleFilter;
+import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.simplewd.model.value.LocaleStringValue;
+import org.wikidata.simplewd.model.value.Value;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Off-heap store of the names and descriptions of the items, used to display the items referenced by an other entity
+ * without loading them.
+ * <p>
+ * The record of an item is stored in a {@link MappedRecordStore} keyed by the numeric part of the Q-id.
+ * It starts with a table of (language ordinal, end of the name, end of the description) entries followed by the
+ * UTF-8 encoded texts, so that only the texts in the requested languages are decoded.
+ * The language ordinals are attributed in the order of first use and stored in the "languages" file.
+ */
+public class LabelStore implements Closeable {
+
+    private static final String LANGUAGES_FILE = "languages";
+    private static final String MULTILINGUAL = "mul";
+    private static final int ENTRY_SIZE = 10;
+
+    private final MappedRecordStore store;
+    private final Path languagesFile;
+    private final Map<String, Integer> languageOrdinals = new HashMap<>();
+    private volatile String[] languages;
+
+    public LabelStore(Path directory) throws IOException {
+        this(new MappedRecordStore(directory), directory);
+    }
+
+    private LabelStore(MappedRecordStore store, Path directory) throws IOException {
+        this.store = store;
+        languagesFile = directory.resolve(LANGUAGES_FILE);
+        List<String> storedLanguages = Files.exists(languagesFile)
+                ? Files.readAllLines(languagesFile, StandardCharsets.UTF_8)
+                : Collections.emptyList();
+        languages = storedLanguages.toArray(new String[0]);
+        for (int i = 0; i < languages.length; i++) {
+            languageOrdinals.put(languages[i], i);
+        }
+    }
+
+    /**
+     * Opens an existing store without creating any file. Writes are rejected.
+     *
+     * @throws java.nio.file.NoSuchFileException if the directory does not contain a store
+     */
+    public static LabelStore openReadOnly(Path directory) throws IOException {
+        return new LabelStore(MappedRecordStore.openReadOnly(directory), directory);
+    }
+
+    public boolean contains(long itemNumber) {
+        return store.contains(itemNumber);
+    }
+
+    /**
+     * @return the names of the item in the languages of the locale filter and the multilingual ones
+     */
+    public Stream<LocaleStringValue> getLabels(long itemNumber, LocaleFilter localeFilter) {
+        return getTexts(itemNumber, localeFilter, false);
+    }
+
+    /**
+     * @return the descriptions of the item in the languages of the locale filter and the multilingual ones
+     */
+    public Stream<LocaleStringValue> getDescriptions(long itemNumber, LocaleFilter localeFilter) {
+        return getTexts(itemNumber, localeFilter, true);
+    }
+
+    /**
+     * Stores the names and descriptions of the entity in place of the previous ones.
+     * Nothing is written if they have not changed.
+     */
+    public void put(long itemNumber, EntityValue entity) throws IOException {
+        if (store.isReadOnly()) {
+            throw new IOException("The label store " + store.getDirectory() + " is opened read-only");
+        }
+        SortedMap<Integer, String[]> texts = new TreeMap<>();
+        addTexts(texts, entity.getValues("name"), 0);
+        addTexts(texts, entity.getValues("description"), 1);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOutput = new DataOutputStream(record);
+        recordOutput.writeShort(texts.size());
+        for (Map.Entry<Integer, String[]> entry : texts.entrySet()) {
+            recordOutput.writeShort(entry.getKey());
+            for (String text : entry.getValue()) {
+                if (text != null) {
+                    data.write(text.getBytes(StandardCharsets.UTF_8));
+                }
+                recordOutput.writeInt(data.size());
+            }
+        }
+        data.writeTo(recordOutput);
+        byte[] newRecord = record.toByteArray();
+        Optional<ByteBuffer> previousRecord = store.get(itemNumber);
+        if (!previousRecord.isPresent() || !previousRecord.get().equals(ByteBuffer.wrap(newRecord))) {
+            store.put(itemNumber, newRecord);
+        }
+    }
+
+    public void remove(long itemNumber) throws IOException {
+        store.remove(itemNumber);
+    }
+
+    /**
+     * @return if the space of the replaced records should be reclaimed by {@link #compact()}
+     */
+    public boolean needsCompaction() {
+        return store.needsCompaction();
+    }
+
+    public void compact() throws IOException {
+        store.compact();
+    }
+
+    public void flush() {
+        store.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private void addTexts(SortedMap<Integer, String[]> texts, Stream<Value> values, int position) throws IOException {
+        for (Value value : (Iterable<Value>) values::iterator) {
+            if (value instanceof LocaleStringValue) {
+                String[] languageTexts = texts.computeIfAbsent(
+                        getLanguageOrdinal(((LocaleStringValue) value).getLanguageCode()), k -> new String[2]
+                );
+                if (languageTexts[position] == null) {
+                    languageTexts[position] = value.toString();
+                }
+            }
+        }
+    }
+
+    private Stream<LocaleStringValue> getTexts(long itemNumber, LocaleFilter localeFilter, boolean descriptions) {
+        Optional<ByteBuffer> record = store.get(itemNumber);
+        if (!record.isPresent()) {
+            return Stream.empty();
+        }
+        ByteBuffer buffer = record.get();
+        Optional<Set<String>> languageCodes = localeFilter.getLanguageCodes();
+        String[] languages = this.languages;
+        int entryCount = buffer.getShort(0) & 0xFFFF;
+        int dataStart = 2 + entryCount * ENTRY_SIZE;
+        List<LocaleStringValue> values = new ArrayList<>();
+        int textStart = 0;
+        for (int i = 0; i < entryCount; i++) {
+            int entry = 2 + i * ENTRY_SIZE;
+            String language = languages[buffer.getShort(entry) & 0xFFFF];
+            int labelEnd = buffer.getInt(entry + 2);
+            int descriptionEnd = buffer.getInt(entry + 6);
+            int start = descriptions ? labelEnd : textStart;
+            int end = descriptions ? descriptionEnd : labelEnd;
+            if (end > start && isRequested(language, languageCodes)) {
+                values.add(new LocaleStringValue(decode(buffer, dataStart + start, dataStart + end), language));
+            }
+            textStart = descriptionEnd;
+        }
+        return values.stream();
+    }
+
+    private static boolean isRequested(String language, Optional<Set<String>> languageCodes) {
+        return !languageCodes.isPresent() ||
+                language.equals(MULTILINGUAL) ||
+                LanguageCodes.toWikimediaCodes(language).stream().anyMatch(languageCodes.get()::contains);
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private synchronized int getLanguageOrdinal(String language) throws IOException {
+        Integer ordinal = languageOrdinals.get(language);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (languages.length > 0xFFFF) {
+            throw new IOException("Too many languages in the label store");
+        }
+        Files.write(languagesFile, Collections.singletonList(language), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND
+        );
+        String[] newLanguages = Arrays.copyOf(languages, languages.length + 1);
+        newLanguages[languages.length] = language;
+        languageOrdinals.put(language, languages.length);
+        languages = newLanguages;
+        return newLanguages.length - 1;
+    }
+}
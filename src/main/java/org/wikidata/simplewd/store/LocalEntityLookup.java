@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.wikidata.simplewd.model.EntityLookup;
+import org.wikidata.simplewd.model.LocaleFilter;
+import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.simplewd.model.value.LocaleStringValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Serves entities from a store built by {@link DumpImporter} without calling the Wikidata API.
+ * <p>
+ * The names and descriptions are read from the label store of the store directory if it exists.
+ */
+public class LocalEntityLookup implements EntityLookup {
+
+    private MappedRecordStore store;
+    private Optional<LabelStore> labelStore;
+
+    /**
+     * @throws java.nio.file.NoSuchFileException if the directory does not contain a store built by {@link DumpImporter}
+     */
+    public LocalEntityLookup(Path storeDirectory) throws IOException {
+        store = MappedRecordStore.openReadOnly(storeDirectory);
+        Path labelStoreDirectory = storeDirectory.resolve(DumpImporter.LABEL_STORE_DIRECTORY);
+        labelStore = Files.isDirectory(labelStoreDirectory)
+                ? Optional.of(LabelStore.openReadOnly(labelStoreDirectory))
+                : Optional.empty();
+    }
+
+    @Override
+    public Stream<LocaleStringValue> getBestLabels(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        if (labelStore.isPresent()) {
+            return localeFilter.getBestValues(labelStore.get().getLabels(itemNumber, localeFilter));
+        }
+        return EntityLookup.super.getBestLabels(localeFilter, itemNumber);
+    }
+
+    @Override
+    public Stream<LocaleStringValue> getBestDescriptions(LocaleFilter localeFilter, long itemNumber) throws IOException {
+        if (labelStore.isPresent()) {
+            return localeFilter.getBestValues(labelStore.get().getDescriptions(itemNumber, localeFilter));
+        }
+        return EntityLookup.super.getBestDescriptions(localeFilter, itemNumber);
+    }
+
+    @Override
+    public Map<Long, EntityValue> getEntities(long... itemNumbers) throws IOException {
+        Map<Long, EntityValue> entities = new HashMap<>();
+        for (long itemNumber : itemNumbers) {
+            Optional<ByteBuffer> record = store.get(itemNumber);
+            if (record.isPresent()) {
+                entities.put(itemNumber, EntitySerializer.deserialize(record.get()));
+            }
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+/**
+ * Key/value store of binary records indexed by a positive long key (e.g. the numeric part of a Q-id).
+ * <p>
+ * The index is a memory-mapped direct-address table of 8 bytes per key and the records are appended
+ * to memory-mapped data segments. Overwriting or removing a key leaves a dead record: the number of dead bytes
+ * of each segment is kept in its header and {@link #compact()} copies the live records to new segments
+ * without blocking the reads and the writes for long.
+ * <p>
+ * Reads do not take any lock: they are validated against the index updates and only retried under a lock if an
+ * update happened concurrently. The stores built beforehand should be opened with {@link #openReadOnly(Path)}.
+ */
+public class MappedRecordStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedRecordStore.class);
+    private static final long SEGMENT_MAGIC = 0x5357445345473031L; //SWDSEG01
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final String SEGMENT_FILE_PREFIX = "data-";
+    private static final int INDEX_CHUNK_SIZE = 1 << 27; //16M keys per index chunk
+    private static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+    private static final int COMPACTION_BATCH_SIZE = 4096;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean readOnly;
+    private final FileChannel indexChannel;
+    /**
+     * Held in write mode while the index or the segment list are modified.
+     * The locks are always taken in this order: the monitor of the store, this lock and then {@link #indexChunkLock}.
+     */
+    private final StampedLock publicationLock = new StampedLock();
+    private final Object indexChunkLock = new Object();
+    private volatile MappedByteBuffer[] indexChunks = new MappedByteBuffer[0];
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int writePosition;
+    private long writtenBytes = 0;
+    private long deadBytes = 0;
+    private boolean isCompacting = false;
+
+    public MappedRecordStore(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MappedRecordStore(Path directory, int segmentSize) throws IOException {
+        this(directory, segmentSize, false);
+    }
+
+    private MappedRecordStore(Path directory, int segmentSize, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            if (!Files.isRegularFile(directory.resolve("index"))) {
+                throw new NoSuchFileException(directory.toString(), null, "no record store in this directory");
+            }
+            indexChannel = FileChannel.open(directory.resolve("index"), StandardOpenOption.READ);
+        } else {
+            Files.createDirectories(directory);
+            indexChannel = FileChannel.open(directory.resolve("index"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            );
+        }
+        for (long chunkId = 0; chunkId < indexChannel.size() / INDEX_CHUNK_SIZE; chunkId++) {
+            getIndexChunk(chunkId, true);
+        }
+        for (int segmentId : listSegmentIds()) {
+            openSegment(segmentId);
+        }
+        if (segments.length == 0) {
+            if (readOnly) {
+                throw new NoSuchFileException(directory.toString(), null, "no data segment in this directory");
+            }
+            openSegment(0);
+        }
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                writtenBytes += getWritePosition(segment) - SEGMENT_HEADER_SIZE;
+                deadBytes += getDeadBytes(segment);
+            }
+        }
+        writePosition = getWritePosition(segments[segments.length - 1]);
+    }
+
+    /**
+     * Opens an existing store without creating any file. Writes are rejected.
+     *
+     * @throws NoSuchFileException if the directory does not contain a store
+     */
+    public static MappedRecordStore openReadOnly(Path directory) throws IOException {
+        return new MappedRecordStore(directory, DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    /**
+     * @return a read-only view on the record or nothing if there is no record for the key
+     */
+    public Optional<ByteBuffer> get(long key) {
+        return read(this::readRecord, key);
+    }
+
+    public boolean contains(long key) {
+        return read(this::getLocation, key) != 0;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public synchronized void put(long key, byte[] record) throws IOException {
+        checkWritable();
+        if (key < 0) {
+            throw new IllegalArgumentException("The record keys should be positive: " + key);
+        }
+        if (record.length + 4 > segmentSize - SEGMENT_HEADER_SIZE) {
+            throw new IOException("The record for key " + key + " is too large: " + record.length + " bytes");
+        }
+        markDead(publish(key, append(record)));
+    }
+
+    /**
+     * Removes the record of the key from the index. Its space is reclaimed by the next compaction.
+     */
+    public synchronized void remove(long key) throws IOException {
+        checkWritable();
+        if (key < 0 || getIndexChunk(key / (INDEX_CHUNK_SIZE / 8), false) == null) {
+            return;
+        }
+        markDead(publish(key, 0));
+    }
+
+    /**
+     * @return if the dead records use more space than the live ones and at least a segment
+     */
+    public synchronized boolean needsCompaction() {
+        return !readOnly && !isCompacting && deadBytes >= segmentSize && deadBytes * 2 >= writtenBytes;
+    }
+
+    /**
+     * Copies the live records to new segments and deletes the previous ones.
+     * The records are copied by batches: the writes are only blocked during the copy of a batch
+     * and the reads during the update of its index entries.
+     *
+     * @return false if a compaction is already running
+     */
+    public boolean compact() throws IOException {
+        checkWritable();
+        int previousSegmentCount;
+        synchronized (this) {
+            if (isCompacting) {
+                return false;
+            }
+            isCompacting = true;
+            previousSegmentCount = segments.length;
+            startSegment();
+        }
+        try {
+            long nextKey = 0;
+            while (nextKey >= 0) {
+                synchronized (this) {
+                    nextKey = copyLiveRecords(nextKey, previousSegmentCount);
+                }
+            }
+            synchronized (this) {
+                dropSegments(previousSegmentCount);
+            }
+            return true;
+        } finally {
+            synchronized (this) {
+                isCompacting = false;
+            }
+        }
+    }
+
+    public synchronized void flush() {
+        if (readOnly) {
+            return;
+        }
+        for (MappedByteBuffer chunk : indexChunks) {
+            if (chunk != null) {
+                chunk.force();
+            }
+        }
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        indexChannel.close();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private void checkWritable() throws IOException {
+        if (readOnly) {
+            throw new IOException("The record store " + directory + " is opened read-only");
+        }
+    }
+
+    /**
+     * Reads without lock and reads again with the lock if the index has been updated in the meantime.
+     * The lock-free read may see an inconsistent state and fail: it is then retried too.
+     */
+    private <T> T read(LongFunction<T> reader, long key) {
+        long stamp = publicationLock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T value = reader.apply(key);
+                if (publicationLock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                //Concurrent update
+            }
+        }
+        stamp = publicationLock.readLock();
+        try {
+            return reader.apply(key);
+        } finally {
+            publicationLock.unlockRead(stamp);
+        }
+    }
+
+    private Optional<ByteBuffer> readRecord(long key) {
+        long location = getLocation(key);
+        if (location == 0) {
+            return Optional.empty();
+        }
+        ByteBuffer segment = segments[(int) (location >>> 32)].duplicate();
+        int position = (int) location;
+        int length = segment.getInt(position);
+        segment.limit(position + 4 + length).position(position + 4);
+        return Optional.of(segment.slice().asReadOnlyBuffer());
+    }
+
+    private long getLocation(long key) {
+        if (key < 0) {
+            return 0;
+        }
+        try {
+            MappedByteBuffer chunk = getIndexChunk(key / (INDEX_CHUNK_SIZE / 8), false);
+            return (chunk == null) ? 0 : chunk.getLong((int) ((key * 8) % INDEX_CHUNK_SIZE));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Copies a batch of records stored in the segments before the given one to the last segment
+     *
+     * @return the key to continue from or -1 if all the keys have been processed
+     */
+    private long copyLiveRecords(long fromKey, int segmentCountLimit) throws IOException {
+        long[] keys = new long[COMPACTION_BATCH_SIZE];
+        long[] locations = new long[COMPACTION_BATCH_SIZE];
+        int batchSize = 0;
+        long keyCount = indexChannel.size() / 8;
+        for (long key = fromKey; key < keyCount; key++) {
+            if (batchSize == COMPACTION_BATCH_SIZE) {
+                publish(keys, locations, batchSize);
+                return key;
+            }
+            long location = getLocation(key);
+            int segmentId = (int) (location >>> 32);
+            if (location == 0 || segmentId >= segmentCountLimit) {
+                continue;
+            }
+            ByteBuffer segment = segments[segmentId].duplicate();
+            int position = (int) location;
+            byte[] record = new byte[segment.getInt(position)];
+            segment.position(position + 4);
+            segment.get(record);
+            keys[batchSize] = key;
+            locations[batchSize] = append(record);
+            batchSize++;
+        }
+        publish(keys, locations, batchSize);
+        return -1;
+    }
+
+    /**
+     * Removes the segments before the given one once no index entry points to them anymore
+     */
+    private void dropSegments(int segmentCount) throws IOException {
+        long stamp = publicationLock.writeLock();
+        MappedByteBuffer[] previousSegments = segments;
+        try {
+            MappedByteBuffer[] newSegments = previousSegments.clone();
+            Arrays.fill(newSegments, 0, segmentCount, null);
+            segments = newSegments;
+        } finally {
+            publicationLock.unlockWrite(stamp);
+        }
+        writtenBytes = 0;
+        deadBytes = 0;
+        for (int segmentId = 0; segmentId < previousSegments.length; segmentId++) {
+            if (segmentId >= segmentCount) {
+                writtenBytes += getWritePosition(previousSegments[segmentId]) - SEGMENT_HEADER_SIZE;
+                deadBytes += getDeadBytes(previousSegments[segmentId]);
+            } else if (previousSegments[segmentId] != null) {
+                Files.deleteIfExists(getSegmentPath(segmentId));
+            }
+        }
+        LOGGER.info("Compaction of " + directory + " done: " + writtenBytes + " bytes written");
+    }
+
+    /**
+     * Writes the record at the end of the last segment without making it visible
+     *
+     * @return the location of the record
+     */
+    private long append(byte[] record) throws IOException {
+        if (writePosition + 4 + record.length > segmentSize) {
+            startSegment();
+        }
+        int segmentId = segments.length - 1;
+        MappedByteBuffer segment = segments[segmentId];
+        ByteBuffer buffer = segment.duplicate();
+        buffer.position(writePosition);
+        buffer.putInt(record.length);
+        buffer.put(record);
+        long location = ((long) segmentId << 32) | writePosition;
+        writePosition += 4 + record.length;
+        writtenBytes += 4 + record.length;
+        setHeader(segment, writePosition, getDeadBytes(segment));
+        return location;
+    }
+
+    /**
+     * Sets the location of the key in the index
+     *
+     * @return the previous location
+     */
+    private long publish(long key, long location) throws IOException {
+        long stamp = publicationLock.writeLock();
+        try {
+            MappedByteBuffer chunk = getIndexChunk(key / (INDEX_CHUNK_SIZE / 8), true);
+            int offset = (int) ((key * 8) % INDEX_CHUNK_SIZE);
+            long previousLocation = chunk.getLong(offset);
+            chunk.putLong(offset, location);
+            return previousLocation;
+        } finally {
+            publicationLock.unlockWrite(stamp);
+        }
+    }
+
+    private void publish(long[] keys, long[] locations, int count) throws IOException {
+        long stamp = publicationLock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                getIndexChunk(keys[i] / (INDEX_CHUNK_SIZE / 8), true)
+                        .putLong((int) ((keys[i] * 8) % INDEX_CHUNK_SIZE), locations[i]);
+            }
+        } finally {
+            publicationLock.unlockWrite(stamp);
+        }
+    }
+
+    private void markDead(long location) {
+        if (location == 0) {
+            return;
+        }
+        MappedByteBuffer segment = segments[(int) (location >>> 32)];
+        if (segment != null) {
+            int size = 4 + segment.getInt((int) location);
+            deadBytes += size;
+            setHeader(segment, getWritePosition(segment), getDeadBytes(segment) + size);
+        }
+    }
+
+    /**
+     * The existing chunks are all mapped when the store is opened, so reads never take a lock here.
+     * The creation only takes {@link #indexChunkLock}, so that it can be done while holding the monitor
+     * or the publication lock.
+     */
+    private MappedByteBuffer getIndexChunk(long chunkId, boolean create) throws IOException {
+        MappedByteBuffer[] chunks = indexChunks;
+        if (chunkId < chunks.length && chunks[(int) chunkId] != null) {
+            return chunks[(int) chunkId];
+        }
+        if (!create) {
+            return null;
+        }
+        long chunkStart = chunkId * INDEX_CHUNK_SIZE;
+        synchronized (indexChunkLock) {
+            chunks = indexChunks;
+            if (chunkId < chunks.length && chunks[(int) chunkId] != null) {
+                return chunks[(int) chunkId];
+            }
+            if (chunkId >= chunks.length) {
+                chunks = Arrays.copyOf(chunks, (int) chunkId + 1);
+            } else {
+                chunks = chunks.clone();
+            }
+            chunks[(int) chunkId] = indexChannel.map(getMapMode(), chunkStart, INDEX_CHUNK_SIZE);
+            indexChunks = chunks;
+            return chunks[(int) chunkId];
+        }
+    }
+
+    private void startSegment() throws IOException {
+        openSegment(segments.length);
+        writePosition = SEGMENT_HEADER_SIZE;
+    }
+
+    private void openSegment(int segmentId) throws IOException {
+        Path path = getSegmentPath(segmentId);
+        boolean isNew = !Files.exists(path);
+        MappedByteBuffer segment;
+        if (readOnly) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+        }
+        if (isNew) {
+            segment.putLong(0, SEGMENT_MAGIC);
+            setHeader(segment, SEGMENT_HEADER_SIZE, 0);
+        } else if (segment.capacity() < SEGMENT_HEADER_SIZE || segment.getLong(0) != SEGMENT_MAGIC) {
+            throw new IOException(path + " is not a valid data segment");
+        }
+        MappedByteBuffer[] newSegments = Arrays.copyOf(segments, Math.max(segments.length, segmentId + 1));
+        newSegments[segmentId] = segment;
+        segments = newSegments;
+    }
+
+    /**
+     * @return the ids of the existing segments. There may be gaps after a compaction.
+     */
+    private List<Integer> listSegmentIds() throws IOException {
+        List<Integer> segmentIds = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                try {
+                    segmentIds.add(Integer.parseInt(file.getFileName().toString().substring(SEGMENT_FILE_PREFIX.length())));
+                } catch (NumberFormatException e) {
+                    //Not a segment
+                }
+            }
+        }
+        Collections.sort(segmentIds);
+        return segmentIds;
+    }
+
+    private FileChannel.MapMode getMapMode() {
+        return readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+    }
+
+    private Path getSegmentPath(int segmentId) {
+        return directory.resolve(SEGMENT_FILE_PREFIX + segmentId);
+    }
+
+    /**
+     * The second long of the segment header contains the write position in its low bits
+     * and the number of dead bytes in its high bits
+     */
+    private static int getWritePosition(ByteBuffer segment) {
+        return (int) segment.getLong(8);
+    }
+
+    private static long getDeadBytes(ByteBuffer segment) {
+        return segment.getLong(8) >>> 32;
+    }
+
+    private static void setHeader(ByteBuffer segment, int writePosition, long deadBytes) {
+        segment.putLong(8, (deadBytes << 32) | writePosition);
+    }
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.simplewd.model.value.EntityValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk-backed cache of mapped entities that survives restarts.
+ * <p>
+ * Entries are appended to memory-mapped segment files of a fixed size and an in-memory index,
+ * rebuilt by scanning the segments on startup, points to the latest record of each key.
+ * Each record also contains the revision of the entity and the languages of its terms.
+ * When a segment is full a new one is started. {@link #compact()}, that should be called in background when
+ * {@link #needsCompaction()} is true, compacts the older segments: segments that are mostly dead (expired or
+ * overwritten records) get their live records copied to the active segment before being deleted and, if the byte
+ * budget is still exceeded, the oldest segments are dropped.
+ * <p>
+ * An invalidation appends a tombstone record so that the older records of the key are not loaded again after
+ * a restart. Tombstones are kept by the compaction until they are older than the TTL, like the records they hide.
+ */
+public class PersistentEntityCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistentEntityCache.class);
+    private static final long SEGMENT_MAGIC = 0x5357444341433032L; //SWDCAC02
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 20;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    private static final int TOMBSTONE_LENGTH = -1;
+    private static final short ALL_LANGUAGES = -1;
+    private static final int MAX_SHARED_LANGUAGE_SETS = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final long ttl;
+    private final Map<Long, Long> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final TreeMap<Integer, Segment> segmentsByAge = new TreeMap<>();
+    /**
+     * The language sets are the ones of the language policy: the equal sets read from the records are shared
+     */
+    private final Map<Set<String>, Set<String>> languageSets = new ConcurrentHashMap<>();
+    private Segment activeSegment;
+    private boolean hasRolledSegment = false;
+    private boolean isCompacting = false;
+
+    /**
+     * @param maxBytes maximal size of the segment files on disk. It may be exceeded by the segments written while
+     *                 the compaction is pending.
+     * @param ttl      time after which an entry is not served anymore
+     */
+    public PersistentEntityCache(Path directory, long maxBytes, long ttl, TimeUnit unit) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = (int) Math.max(1 << 20, Math.min(1 << 26, maxBytes / 16));
+        this.ttl = unit.toMillis(ttl);
+        Files.createDirectories(directory);
+        load();
+        compact();
+    }
+
+    public Optional<Entry> get(long key) {
+        Long location = index.get(key);
+        if (location == null) {
+            return Optional.empty();
+        }
+        Segment segment = segments.get((int) (location >>> 32));
+        if (segment == null) {
+            index.remove(key, location);
+            return Optional.empty();
+        }
+        ByteBuffer record = segment.buffer.duplicate();
+        int position = (int) (long) location;
+        long writeTime = record.getLong(position + 8);
+        if (isExpired(writeTime)) {
+            index.remove(key, location);
+            return Optional.empty();
+        }
+        int length = record.getInt(position + 16);
+        record.limit(position + RECORD_HEADER_SIZE + length).position(position + RECORD_HEADER_SIZE);
+        try {
+            long revisionId = record.getLong();
+            Set<String> languages = readLanguages(record);
+            return Optional.of(new Entry(EntitySerializer.deserialize(record.slice()), revisionId, languages, writeTime));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Invalid cache record for Q" + key + ": " + e.getMessage());
+            index.remove(key, location);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @param languages languages of the terms of the entity, null if all its languages are kept
+     */
+    public void put(long key, EntityValue entity, long revisionId, Set<String> languages) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            try (DataOutputStream output = new DataOutputStream(outputStream)) {
+                output.writeLong(revisionId);
+                writeLanguages(output, languages);
+                output.write(EntitySerializer.serialize(entity));
+            }
+            byte[] data = outputStream.toByteArray();
+            synchronized (this) {
+                append(key, System.currentTimeMillis(), data, 0, data.length);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to persist Q" + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Removes the entry. The removal is persisted: call {@link #flush()} to make sure it is written to disk.
+     */
+    public synchronized void invalidate(long key) {
+        markDead(index.remove(key));
+        try {
+            appendTombstone(key, System.currentTimeMillis());
+        } catch (IOException e) {
+            LOGGER.warn("Failed to persist the invalidation of Q" + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the pending changes to disk
+     */
+    public synchronized void flush() {
+        for (Segment segment : segmentsByAge.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * @return if a segment has been filled since the last compaction
+     */
+    public synchronized boolean needsCompaction() {
+        return hasRolledSegment && !isCompacting;
+    }
+
+    /**
+     * Compacts the segments that are not active. The live records are copied outside of the lock of the cache:
+     * the cache stays readable and writable during the compaction.
+     */
+    public void compact() throws IOException {
+        Segment[] compactedSegments;
+        synchronized (this) {
+            if (isCompacting) {
+                return;
+            }
+            isCompacting = true;
+            hasRolledSegment = false;
+            compactedSegments = segmentsByAge.values().toArray(new Segment[0]);
+        }
+        try {
+            long now = System.currentTimeMillis();
+            for (Segment segment : compactedSegments) {
+                if (isActiveSegment(segment)) {
+                    continue;
+                }
+                if (segment.newestWriteTime + ttl < now) {
+                    dropSegment(segment);
+                } else if (segment.liveBytes < COMPACTION_THRESHOLD * (segment.writePosition - SEGMENT_HEADER_SIZE)) {
+                    copyLiveRecords(segment);
+                    dropSegment(segment);
+                }
+            }
+            synchronized (this) {
+                while ((long) segmentsByAge.size() * segmentSize > maxBytes && segmentsByAge.firstEntry().getValue() != activeSegment) {
+                    dropSegment(segmentsByAge.firstEntry().getValue());
+                }
+            }
+        } finally {
+            synchronized (this) {
+                isCompacting = false;
+            }
+        }
+    }
+
+    private void append(long key, long writeTime, byte[] data, int offset, int length) throws IOException {
+        if (RECORD_HEADER_SIZE + length > segmentSize - SEGMENT_HEADER_SIZE) {
+            LOGGER.info("Q" + key + " is too large to be persisted: " + length + " bytes");
+            return;
+        }
+        if (activeSegment.writePosition + RECORD_HEADER_SIZE + length > segmentSize) {
+            rollSegment();
+        }
+        ByteBuffer buffer = activeSegment.buffer.duplicate();
+        int position = activeSegment.writePosition;
+        buffer.position(position);
+        buffer.putLong(key);
+        buffer.putLong(writeTime);
+        buffer.putInt(length);
+        buffer.put(data, offset, length);
+        activeSegment.writePosition += RECORD_HEADER_SIZE + length;
+        activeSegment.buffer.putLong(8, activeSegment.writePosition);
+        activeSegment.liveBytes += RECORD_HEADER_SIZE + length;
+        activeSegment.newestWriteTime = Math.max(activeSegment.newestWriteTime, writeTime);
+        activeSegment.addKey(key);
+        markDead(index.put(key, ((long) activeSegment.id << 32) | position));
+    }
+
+    private void appendTombstone(long key, long writeTime) throws IOException {
+        if (activeSegment.writePosition + RECORD_HEADER_SIZE > segmentSize) {
+            rollSegment();
+        }
+        ByteBuffer buffer = activeSegment.buffer.duplicate();
+        buffer.position(activeSegment.writePosition);
+        buffer.putLong(key);
+        buffer.putLong(writeTime);
+        buffer.putInt(TOMBSTONE_LENGTH);
+        activeSegment.writePosition += RECORD_HEADER_SIZE;
+        activeSegment.buffer.putLong(8, activeSegment.writePosition);
+        activeSegment.newestWriteTime = Math.max(activeSegment.newestWriteTime, writeTime);
+    }
+
+    private void rollSegment() throws IOException {
+        activeSegment = openSegment(activeSegment.id + 1);
+        hasRolledSegment = true;
+    }
+
+    private synchronized boolean isActiveSegment(Segment segment) {
+        return segment == activeSegment;
+    }
+
+    /**
+     * The segment is not active anymore: its records are read without lock and only the copies take the lock
+     */
+    private void copyLiveRecords(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = SEGMENT_HEADER_SIZE;
+        while (position < segment.writePosition) {
+            long key = buffer.getLong(position);
+            long writeTime = buffer.getLong(position + 8);
+            int length = buffer.getInt(position + 16);
+            long location = ((long) segment.id << 32) | position;
+            if (length == TOMBSTONE_LENGTH) {
+                //The tombstone is still needed if the key has not been written again since
+                synchronized (this) {
+                    if (!index.containsKey(key) && !isExpired(writeTime)) {
+                        appendTombstone(key, writeTime);
+                    }
+                }
+            } else if (isLatestRecord(key, location) && !isExpired(writeTime)) {
+                byte[] data = new byte[length];
+                buffer.position(position + RECORD_HEADER_SIZE);
+                buffer.get(data);
+                synchronized (this) {
+                    //The key may have been written or invalidated during the copy
+                    if (isLatestRecord(key, location)) {
+                        append(key, writeTime, data, 0, length);
+                    }
+                }
+            }
+            position += getRecordSize(buffer, position);
+        }
+    }
+
+    private boolean isLatestRecord(long key, long location) {
+        Long latestLocation = index.get(key);
+        return latestLocation != null && latestLocation == location;
+    }
+
+    private synchronized void dropSegment(Segment segment) throws IOException {
+        if (segments.remove(segment.id) == null) {
+            return;
+        }
+        segmentsByAge.remove(segment.id);
+        for (int i = 0; i < segment.keyCount; i++) {
+            long key = segment.keys[i];
+            Long location = index.get(key);
+            if (location != null && (location >>> 32) == segment.id) {
+                index.remove(key, location);
+            }
+        }
+        Files.deleteIfExists(getSegmentPath(segment.id));
+    }
+
+    private void markDead(Long location) {
+        if (location == null) {
+            return;
+        }
+        Segment segment = segments.get((int) (location >>> 32));
+        if (segment != null) {
+            segment.liveBytes -= getRecordSize(segment.buffer, (int) (long) location);
+        }
+    }
+
+    private synchronized void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+            for (Path file : files) {
+                int id = Integer.parseInt(file.getFileName().toString().substring("segment-".length()));
+                try {
+                    openSegment(id);
+                } catch (IOException e) {
+                    //E.g. a segment of a previous version of the record format
+                    LOGGER.warn("Deleting the cache segment " + file + ": " + e.getMessage());
+                    Files.delete(file);
+                }
+            }
+        }
+        for (Segment segment : segmentsByAge.values()) {
+            int position = SEGMENT_HEADER_SIZE;
+            while (position < segment.writePosition) {
+                long key = segment.buffer.getLong(position);
+                long writeTime = segment.buffer.getLong(position + 8);
+                int recordSize = getRecordSize(segment.buffer, position);
+                if (segment.buffer.getInt(position + 16) == TOMBSTONE_LENGTH) {
+                    markDead(index.remove(key));
+                } else if (!isExpired(writeTime)) {
+                    segment.liveBytes += recordSize;
+                    segment.addKey(key);
+                    markDead(index.put(key, ((long) segment.id << 32) | position));
+                }
+                segment.newestWriteTime = Math.max(segment.newestWriteTime, writeTime);
+                position += recordSize;
+            }
+        }
+        if (segmentsByAge.isEmpty()) {
+            activeSegment = openSegment(0);
+        } else if (segmentsByAge.lastEntry().getValue().buffer.capacity() == segmentSize) {
+            activeSegment = segmentsByAge.lastEntry().getValue();
+        } else {
+            activeSegment = openSegment(segmentsByAge.lastKey() + 1);
+        }
+        LOGGER.info(index.size() + " entities loaded from the persistent cache " + directory);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Path path = getSegmentPath(id);
+        boolean isNew = !Files.exists(path);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, isNew ? 0 : channel.size()));
+        }
+        if (isNew) {
+            buffer.putLong(0, SEGMENT_MAGIC);
+            buffer.putLong(8, SEGMENT_HEADER_SIZE);
+        } else if (buffer.getLong(0) != SEGMENT_MAGIC) {
+            throw new IOException(path + " is not a valid cache segment");
+        }
+        Segment segment = new Segment(id, buffer);
+        segments.put(id, segment);
+        segmentsByAge.put(id, segment);
+        return segment;
+    }
+
+    private Path getSegmentPath(int id) {
+        return directory.resolve("segment-" + id);
+    }
+
+    private boolean isExpired(long writeTime) {
+        return writeTime + ttl < System.currentTimeMillis();
+    }
+
+    private static void writeLanguages(DataOutputStream output, Set<String> languages) throws IOException {
+        if (languages == null) {
+            output.writeShort(ALL_LANGUAGES);
+            return;
+        }
+        output.writeShort(languages.size());
+        for (String language : languages) {
+            byte[] bytes = language.getBytes(StandardCharsets.UTF_8);
+            output.writeByte(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private Set<String> readLanguages(ByteBuffer buffer) {
+        short count = buffer.getShort();
+        if (count == ALL_LANGUAGES) {
+            return null;
+        }
+        Set<String> languages = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[buffer.get() & 0xFF];
+            buffer.get(bytes);
+            languages.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        Set<String> sharedLanguages = languageSets.get(languages);
+        if (sharedLanguages != null) {
+            return sharedLanguages;
+        }
+        languages = Collections.unmodifiableSet(languages);
+        if (languageSets.size() < MAX_SHARED_LANGUAGE_SETS) {
+            languageSets.putIfAbsent(languages, languages);
+        }
+        return languages;
+    }
+
+    private static int getRecordSize(ByteBuffer buffer, int position) {
+        return RECORD_HEADER_SIZE + Math.max(0, buffer.getInt(position + 16));
+    }
+
+    /**
+     * An entity read from the cache
+     */
+    public static class Entry {
+        private final EntityValue entity;
+        private final long revisionId;
+        private final Set<String> languages;
+        private final long writeTime;
+
+        private Entry(EntityValue entity, long revisionId, Set<String> languages, long writeTime) {
+            this.entity = entity;
+            this.revisionId = revisionId;
+            this.languages = languages;
+            this.writeTime = writeTime;
+        }
+
+        public EntityValue getEntity() {
+            return entity;
+        }
+
+        public long getRevisionId() {
+            return revisionId;
+        }
+
+        /**
+         * @return the languages of the terms of the entity, null if all its languages are kept
+         */
+        public Set<String> getLanguages() {
+            return languages;
+        }
+
+        /**
+         * @return when the entity has been written, in milliseconds since the epoch
+         */
+        public long getWriteTime() {
+            return writeTime;
+        }
+    }
+
+    private static class Segment {
+        private final int id;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long liveBytes = 0;
+        private long newestWriteTime = 0;
+        /**
+         * Keys of the records of the segment, used to update the index when the segment is dropped
+         */
+        private long[] keys = new long[64];
+        private int keyCount = 0;
+
+        private Segment(int id, MappedByteBuffer buffer) {
+            this.id = id;
+            this.buffer = buffer;
+            this.writePosition = (int) buffer.getLong(8);
+        }
+
+        private void addKey(long key) {
+            if (keyCount == keys.length) {
+                keys = Arrays.copyOf(keys, keyCount * 2);
+            }
+            keys[keyCount++] = key;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import org.junit.After;
+import org.junit.Test;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class BisectingBatchLoaderTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test(timeout = 10000)
+    public void testMissingKeysAreIsolated() throws Exception {
+        Set<Long> missingKeys = new HashSet<>(Arrays.asList(3L, 17L, 18L));
+        List<List<Long>> requests = Collections.synchronizedList(new ArrayList<>());
+        BisectingBatchLoader<Long, String> loader = new BisectingBatchLoader<>(keys -> {
+            requests.add(new ArrayList<>(keys));
+            if (keys.stream().anyMatch(missingKeys::contains)) {
+                throw new NoSuchEntityErrorException("Could not find an item with the given id");
+            }
+            return CompletableFuture.completedFuture(keys.stream().collect(Collectors.toMap(key -> key, key -> "Q" + key)));
+        }, executor);
+
+        List<Long> keys = LongStream.range(0, 50).boxed().collect(Collectors.toList());
+        Map<Long, String> values = loader.load(keys).get();
+
+        assertEquals(47, values.size());
+        for (long key : keys) {
+            assertEquals(missingKeys.contains(key) ? null : "Q" + key, values.get(key));
+        }
+        for (long missingKey : missingKeys) {
+            assertTrue(requests.contains(Collections.singletonList(missingKey)));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrencyIsBounded() throws Exception {
+        AtomicInteger runningRequests = new AtomicInteger();
+        AtomicInteger maxRunningRequests = new AtomicInteger();
+        BisectingBatchLoader<Long, Long> loader = new BisectingBatchLoader<>(keys -> {
+            maxRunningRequests.accumulateAndGet(runningRequests.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+                if (keys.size() > 1) {
+                    throw new NoSuchEntityErrorException("Could not find an item with the given id");
+                }
+                return CompletableFuture.completedFuture(Collections.singletonMap(keys.get(0), keys.get(0)));
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                runningRequests.decrementAndGet();
+            }
+        }, executor);
+
+        //Every batch is split until single keys: the executor threads must never wait for the halves
+        Map<Long, Long> values = loader.load(LongStream.range(0, 64).boxed().collect(Collectors.toList())).get();
+
+        assertEquals(64, values.size());
+        assertTrue(maxRunningRequests.get() <= 2);
+    }
+
+    @Test(timeout = 10000)
+    public void testOtherErrorsAreReported() throws Exception {
+        BisectingBatchLoader<Long, Long> loader = new BisectingBatchLoader<>(keys -> {
+            throw new MediaWikiApiErrorException("internal_api_error", "Internal error");
+        }, executor);
+
+        try {
+            loader.load(Arrays.asList(1L, 2L)).get();
+            fail("The API error should be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
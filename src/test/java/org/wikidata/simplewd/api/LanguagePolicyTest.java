@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class LanguagePolicyTest {
+
+    @Test
+    public void testBaseLanguages() {
+        LanguagePolicy policy = new LanguagePolicy(Arrays.asList("de-ch", "gsw"), Arrays.asList("en", "mul"), 0);
+        assertEquals(new HashSet<>(Arrays.asList("de-ch", "de", "gsw", "als", "en", "mul")), policy.getBaseLanguages());
+        assertEquals(policy.getBaseLanguages(), policy.getKeptLanguages());
+    }
+
+    @Test
+    public void testPromotion() {
+        LanguagePolicy policy = new LanguagePolicy(Collections.singletonList("fr"), Collections.singletonList("en"), 2);
+        policy.recordRequest(Collections.singleton("yue"));
+        assertFalse(policy.getKeptLanguages().contains("yue"));
+        policy.recordRequest(new HashSet<>(Arrays.asList("yue", "fr")));
+        assertTrue(policy.getKeptLanguages().containsAll(Arrays.asList("fr", "en", "yue", "zh-yue")));
+        assertEquals(new HashSet<>(Arrays.asList("yue", "zh-yue")), policy.getPromotedLanguages());
+        assertEquals(new HashSet<>(Arrays.asList("fr", "en")), policy.getBaseLanguages());
+    }
+
+    @Test
+    public void testOnlyWikimediaCodesArePromoted() {
+        LanguagePolicy policy = new LanguagePolicy(Collections.singletonList("fr"), Collections.singletonList("en"), 1);
+        policy.recordRequest(new HashSet<>(Arrays.asList("qaa", "sr-Latn", "<script>")));
+        assertEquals(Collections.emptySet(), policy.getPromotedLanguages());
+    }
+
+    @Test
+    public void testPromotionDisabled() {
+        LanguagePolicy policy = new LanguagePolicy(Collections.singletonList("fr"), Collections.singletonList("en"), 0);
+        for (int i = 0; i < 10; i++) {
+            policy.recordRequest(Collections.singleton("de"));
+        }
+        assertEquals(Collections.emptySet(), policy.getPromotedLanguages());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestBatcherTest {
+
+    @Test(timeout = 10000)
+    public void testKeysAreBatched() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        RequestBatcher<Integer, String> batcher = new RequestBatcher<>("test", keys -> {
+            batches.add(keys);
+            Map<Integer, String> values = new HashMap<>();
+            keys.stream().filter(key -> key % 10 != 0).forEach(key -> values.put(key, Integer.toString(key)));
+            return values;
+        }, 3, 1, TimeUnit.HOURS, 2);
+
+        Map<Integer, String> values = batcher.load(Arrays.asList(1, 2, 3, 10, 5, 6));
+
+        assertEquals(2, batches.size());
+        assertEquals(5, values.size());
+        assertEquals("5", values.get(5));
+        assertFalse(values.containsKey(10));
+        assertEquals(2, batcher.getBatchCount());
+        assertEquals(6, batcher.getLoadedKeyCount());
+        assertEquals(1, batcher.getAverageFillRate(), 0);
+    }
+
+    @Test(timeout = 10000)
+    public void testDuplicatedKeysAreCountedOnce() throws Exception {
+        List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>("test", keys -> {
+            batches.add(keys);
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }, 50, 100, TimeUnit.MILLISECONDS);
+
+        //Both callers request the key 2 in the same time window
+        CompletableFuture<Map<Integer, Integer>> first = batcher.loadAsync(Arrays.asList(1, 2));
+        CompletableFuture<Map<Integer, Integer>> second = batcher.loadAsync(Arrays.asList(2, 3));
+        first.get();
+        second.get();
+
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2, 3)), batches);
+        assertEquals(1, batcher.getBatchCount());
+        assertEquals(3, batcher.getLoadedKeyCount());
+        assertEquals(Long.valueOf(1), batcher.getBatchSizeHistogram().get("<=4"));
+        assertEquals(Long.valueOf(0), batcher.getBatchSizeHistogram().get("<=2"));
+        assertEquals(1, batcher.getBatchLatencyHistogram().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test(timeout = 10000)
+    public void testFailuresAreReported() throws Exception {
+        RequestBatcher<Integer, Integer> batcher = new RequestBatcher<>("test", keys -> {
+            throw new IOException("API unavailable");
+        }, 50, 1, TimeUnit.MILLISECONDS, 1);
+
+        try {
+            batcher.load(Arrays.asList(1, 2));
+            fail("The loading failure should be reported");
+        } catch (IOException e) {
+            assertEquals("API unavailable", e.getMessage());
+        }
+        try {
+            batcher.loadAsync(Collections.singletonList(3)).get();
+            fail("The loading failure should be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.mapping.statement;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MapperRegistryTest {
+
+    private final MapperRegistry mapperRegistry = new MapperRegistry();
+
+    @Test
+    public void testMappedProperties() {
+        assertTrue(mapperRegistry.isMappedProperty("P31"));
+        assertTrue(mapperRegistry.getMapperForProperty("P18").isPresent());
+        assertFalse(mapperRegistry.isMappedProperty("P1"));
+        assertFalse(mapperRegistry.getMapperForProperty("P1").isPresent());
+    }
+
+    @Test
+    public void testNonCanonicalPropertyIds() {
+        assertFalse(mapperRegistry.isMappedProperty("P031"));
+        assertFalse(mapperRegistry.isMappedProperty("P0"));
+        assertFalse(mapperRegistry.isMappedProperty("p31"));
+        assertFalse(mapperRegistry.isMappedProperty("P"));
+        assertFalse(mapperRegistry.isMappedProperty("P3a"));
+        assertFalse(mapperRegistry.isMappedProperty("Q31"));
+        assertFalse(mapperRegistry.getMapperForProperty("P00018").isPresent());
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class LanguageCodesTest {
+
+    @Test
+    public void testToWikimediaCodes() {
+        assertEquals(Collections.singleton("en"), LanguageCodes.toWikimediaCodes("en"));
+        assertEquals(Collections.singleton("sr-el"), LanguageCodes.toWikimediaCodes("sr-Latn"));
+        assertEquals(Collections.singleton("de-ch"), LanguageCodes.toWikimediaCodes("de-CH"));
+        assertEquals(Collections.singleton("simple"), LanguageCodes.toWikimediaCodes("en-x-simple"));
+        assertEquals(new HashSet<>(Arrays.asList("als", "gsw")), LanguageCodes.toWikimediaCodes("gsw"));
+        assertEquals(new HashSet<>(Arrays.asList("yue", "zh-yue")), LanguageCodes.toWikimediaCodes("yue"));
+        assertEquals(Collections.singleton("mul"), LanguageCodes.toWikimediaCodes("mul"));
+        assertEquals(Collections.emptySet(), LanguageCodes.toWikimediaCodes("qaa"));
+    }
+
+    @Test
+    public void testGetEquivalentCodes() {
+        assertEquals(new HashSet<>(Arrays.asList("als", "gsw")), LanguageCodes.getEquivalentCodes("als"));
+        assertEquals(Collections.singleton("fr"), LanguageCodes.getEquivalentCodes("fr"));
+        assertEquals(Collections.singleton("not-a-code"), LanguageCodes.getEquivalentCodes("not-a-code"));
+    }
+
+    @Test
+    public void testIsWikimediaCode() {
+        assertTrue(LanguageCodes.isWikimediaCode("sr-el"));
+        assertTrue(LanguageCodes.isWikimediaCode("mul"));
+        assertFalse(LanguageCodes.isWikimediaCode("sr-Latn"));
+        assertFalse(LanguageCodes.isWikimediaCode("qaa"));
+    }
+}
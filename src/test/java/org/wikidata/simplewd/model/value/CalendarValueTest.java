@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.model.value;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CalendarValueTest {
+
+    @Test
+    public void testParsing() {
+        CalendarValue year = new CalendarValue("-0500");
+        assertEquals(-500, year.getYear());
+        assertEquals(CalendarValue.Precision.YEAR, year.getPrecision());
+        assertEquals("gYear", year.getXsdDatatype());
+
+        CalendarValue month = new CalendarValue("2017-03");
+        assertEquals(3, month.getMonth());
+        assertEquals("gYearMonth", month.getXsdDatatype());
+
+        CalendarValue day = new CalendarValue("2017-03-25");
+        assertEquals(25, day.getDay());
+        assertEquals("date", day.getXsdDatatype());
+
+        CalendarValue dateTime = new CalendarValue("2017-03-25T10:20:30.5+02:00");
+        assertEquals(10, dateTime.getHour());
+        assertEquals(20, dateTime.getMinute());
+        assertEquals(30, dateTime.getSecond());
+        assertEquals("dateTime", dateTime.getXsdDatatype());
+        assertEquals("2017-03-25T10:20:30.5+02:00", dateTime.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLexicalForm() {
+        new CalendarValue("2017-3-25");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMonth() {
+        new CalendarValue("2017-13");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testYearZero() {
+        new CalendarValue(0, 1, 1, 0, 0, 0, CalendarValue.Precision.DAY);
+    }
+
+    @Test
+    public void testLexicalFormOfFields() {
+        assertEquals("2017-03-25T01:02:03Z", new CalendarValue(2017, 3, 25, 1, 2, 3, CalendarValue.Precision.SECOND).toString());
+        assertEquals("2017-03", new CalendarValue(2017, 3, 25, 1, 2, 3, CalendarValue.Precision.MONTH).toString());
+        assertEquals("-0044-03-15", new CalendarValue(-44, 3, 15, 0, 0, 0, CalendarValue.Precision.DAY).toString());
+    }
+
+    @Test
+    public void testEquality() {
+        CalendarValue utc = new CalendarValue(2000, 1, 1, 0, 0, 0, CalendarValue.Precision.SECOND);
+        assertEquals(utc, new CalendarValue("2000-01-01T00:00:00Z"));
+        assertEquals(utc, new CalendarValue("2000-01-01T00:00:00+00:00"));
+        assertEquals(utc.hashCode(), new CalendarValue("2000-01-01T00:00:00+00:00").hashCode());
+        assertEquals(utc, new CalendarValue("2000-01-01T00:00:00.000Z"));
+        assertNotEquals(utc, new CalendarValue("2000-01-01T00:00:00"));
+        assertNotEquals(utc, new CalendarValue("2000-01-01T00:00:00+01:00"));
+        assertNotEquals(new CalendarValue("2000"), new CalendarValue("2000-01"));
+        assertEquals(new CalendarValue("2000-05"), new CalendarValue(2000, 5, 12, 0, 0, 0, CalendarValue.Precision.MONTH));
+    }
+}
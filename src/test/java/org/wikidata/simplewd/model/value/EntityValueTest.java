@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.model.value;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class EntityValueTest {
+
+    @Test
+    public void testDuplicatesAreSkipped() {
+        EntityValue entity = new EntityValue("wd:Q42");
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 20; i++) {
+                entity.addClaim("citation", EntityIdValue.of("wd:Q" + i));
+            }
+        }
+        entity.addClaim("sameAs", EntityIdValue.of("wd:Q1"));
+        assertEquals(
+                IntStream.range(0, 20).mapToObj(i -> "wd:Q" + i).collect(Collectors.toList()),
+                entity.getValues("citation").map(Value::toString).collect(Collectors.toList())
+        );
+        assertEquals(21, entity.getClaims().count());
+    }
+
+    @Test(timeout = 10000)
+    public void testManyValuesForAProperty() {
+        EntityValue entity = new EntityValue("wd:Q42");
+        for (int i = 0; i < 200000; i++) {
+            entity.addClaim("citation", EntityIdValue.of("wd:Q" + (i % 100000)));
+        }
+        assertEquals(100000, entity.getValues("citation").count());
+    }
+
+    @Test
+    public void testFreezeKeepsTheClaims() {
+        EntityValue role = new EntityValue("_:role");
+        role.addClaim("name", ConstantValue.of("Author"));
+        EntityValue entity = new EntityValue("wd:Q42");
+        entity.addType("Person");
+        for (int i = 0; i < 10; i++) {
+            entity.addClaim("citation", EntityIdValue.of("wd:Q" + i));
+        }
+        entity.addClaim("author", role);
+        List<String> claims = entity.getClaims().map(claim -> claim.getProperty() + " " + claim.getValue()).sorted()
+                .collect(Collectors.toList());
+
+        assertSame(entity, entity.freeze());
+        assertTrue(entity.isFrozen());
+        assertTrue(role.isFrozen());
+        assertEquals(claims, entity.getClaims().map(claim -> claim.getProperty() + " " + claim.getValue()).sorted()
+                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("author", "citation"), entity.getProperties().stream().sorted().collect(Collectors.toList()));
+        assertEquals("wd:Q0", entity.getValue("citation").get().toString());
+        assertEquals(10, entity.getValues("citation").count());
+        assertTrue(entity.hasValueFor("author"));
+        assertFalse(entity.hasValueFor("name"));
+        assertFalse(entity.getValue("name").isPresent());
+        assertTrue(entity.hasType("Person"));
+    }
+
+    @Test
+    public void testFrozenProperties() {
+        EntityValue entity = new EntityValue("wd:Q42");
+        entity.addClaim("name", new LocaleStringValue("Douglas Adams", "en"));
+        entity.addClaim("name", new LocaleStringValue("Douglas Adams", "en"));
+        entity.addClaim("name", new LocaleStringValue("Douglas Adams", "fr"));
+        entity.addClaim("identifier", new StringValue("42"));
+        entity.freeze();
+        assertSame(entity.getProperties(), entity.getProperties());
+        assertEquals(2, entity.getProperties().size());
+        assertTrue(entity.getProperties().contains("name"));
+        assertFalse(entity.getProperties().contains("description"));
+        assertEquals(Arrays.asList("Douglas Adams@en", "Douglas Adams@fr"), entity.getValues("name")
+                .map(value -> value + "@" + ((LocaleStringValue) value).getLanguageCode()).collect(Collectors.toList()));
+        assertEquals("42", entity.getValue("identifier").get().getValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFrozenEntitiesAreReadOnly() {
+        EntityValue entity = new EntityValue("wd:Q42").freeze();
+        entity.addClaim("name", ConstantValue.of("Douglas Adams"));
+    }
+}
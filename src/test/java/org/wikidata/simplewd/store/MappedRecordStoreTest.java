@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class MappedRecordStoreTest {
+
+    private static final int SEGMENT_SIZE = 1 << 16;
+    private static final long KEYS_PER_INDEX_CHUNK = 1 << 24;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetRemove() throws IOException {
+        try (MappedRecordStore store = new MappedRecordStore(folder.getRoot().toPath(), SEGMENT_SIZE)) {
+            assertFalse(store.get(42).isPresent());
+            store.put(42, new byte[]{1, 2, 3});
+            assertArrayEquals(new byte[]{1, 2, 3}, toBytes(store.get(42)));
+            store.put(42, new byte[]{4});
+            assertArrayEquals(new byte[]{4}, toBytes(store.get(42)));
+            assertTrue(store.contains(42));
+            store.remove(42);
+            assertFalse(store.contains(42));
+            assertFalse(store.get(-1).isPresent());
+            assertFalse(store.get(Long.MAX_VALUE / 16).isPresent());
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (MappedRecordStore store = new MappedRecordStore(directory, SEGMENT_SIZE)) {
+            store.put(1, new byte[]{1});
+            store.put(KEYS_PER_INDEX_CHUNK + 1, new byte[]{2});
+        }
+        try (MappedRecordStore store = MappedRecordStore.openReadOnly(directory)) {
+            assertArrayEquals(new byte[]{1}, toBytes(store.get(1)));
+            assertArrayEquals(new byte[]{2}, toBytes(store.get(KEYS_PER_INDEX_CHUNK + 1)));
+            assertFalse(store.contains(2));
+        }
+    }
+
+    @Test(expected = NoSuchFileException.class)
+    public void testOpenReadOnlyMissingStore() throws IOException {
+        MappedRecordStore.openReadOnly(folder.getRoot().toPath().resolve("missing"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadOnlyRejectsWrites() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        new MappedRecordStore(directory, SEGMENT_SIZE).close();
+        try (MappedRecordStore store = MappedRecordStore.openReadOnly(directory)) {
+            store.put(1, new byte[]{1});
+        }
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        try (MappedRecordStore store = new MappedRecordStore(directory, SEGMENT_SIZE)) {
+            for (int round = 0; round < 10; round++) {
+                for (long key = 0; key < 1000; key++) {
+                    store.put(key, record(key, round));
+                }
+            }
+            store.remove(7);
+            assertTrue(store.needsCompaction());
+            assertTrue(store.compact());
+            assertFalse(store.needsCompaction());
+            assertArrayEquals(record(3, 9), toBytes(store.get(3)));
+            assertFalse(store.contains(7));
+        }
+        assertTrue(directory.toFile().list().length <= 3);
+        try (MappedRecordStore store = MappedRecordStore.openReadOnly(directory)) {
+            for (long key = 0; key < 1000; key++) {
+                if (key != 7) {
+                    assertArrayEquals(record(key, 9), toBytes(store.get(key)));
+                }
+            }
+        }
+    }
+
+    /**
+     * The readers and the writers should neither deadlock nor see a partial record
+     * while new index chunks and segments are created and the store is compacted
+     */
+    @Test(timeout = 60000)
+    public void testConcurrentReadsAndWrites() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean isWriting = new AtomicBoolean(true);
+        try (MappedRecordStore store = new MappedRecordStore(folder.getRoot().toPath(), SEGMENT_SIZE)) {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    while (isWriting.get()) {
+                        for (long key = 0; key < 2 * KEYS_PER_INDEX_CHUNK; key += KEYS_PER_INDEX_CHUNK / 4 + 1) {
+                            store.get(key).ifPresent(record -> assertEquals(1000, record.remaining()));
+                            //Past the end of the index
+                            store.get(key + 8 * KEYS_PER_INDEX_CHUNK);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int round = 0; round < 300; round++) {
+                for (long key = 0; key < 2 * KEYS_PER_INDEX_CHUNK; key += KEYS_PER_INDEX_CHUNK / 4 + 1) {
+                    store.put(key, new byte[1000]);
+                }
+                if (store.needsCompaction()) {
+                    store.compact();
+                }
+            }
+            isWriting.set(false);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static byte[] record(long key, int round) {
+        return (key + "/" + round).getBytes();
+    }
+
+    private static byte[] toBytes(Optional<ByteBuffer> record) {
+        assertTrue(record.isPresent());
+        byte[] bytes = new byte[record.get().remaining()];
+        record.get().duplicate().get(bytes);
+        return bytes;
+    }
+}
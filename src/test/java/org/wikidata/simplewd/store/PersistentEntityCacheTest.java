@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2017 Simple WD Developers
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wikidata.simplewd.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wikidata.simplewd.model.value.EntityIdValue;
+import org.wikidata.simplewd.model.value.EntityValue;
+import org.wikidata.simplewd.model.value.LocaleStringValue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PersistentEntityCacheTest {
+
+    private static final long MAX_BYTES = 1 << 23;
+    private static final Set<String> LANGUAGES = new HashSet<>(Arrays.asList("en", "fr"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPutGet() throws IOException {
+        PersistentEntityCache cache = new PersistentEntityCache(folder.getRoot().toPath(), MAX_BYTES, 1, TimeUnit.DAYS);
+        assertFalse(cache.get(42).isPresent());
+        long start = System.currentTimeMillis();
+        cache.put(42, buildEntity(42, "Douglas Adams"), 1234, LANGUAGES);
+        cache.put(43, buildEntity(43, "Foo"), 5678, null);
+
+        PersistentEntityCache.Entry entry = cache.get(42).orElseThrow(AssertionError::new);
+        assertEquals("wd:Q42", entry.getEntity().getIRI());
+        assertEquals(1, entry.getEntity().getValues("name").count());
+        assertEquals(1234, entry.getRevisionId());
+        assertEquals(LANGUAGES, entry.getLanguages());
+        assertTrue(entry.getWriteTime() >= start);
+        assertNull(cache.get(43).orElseThrow(AssertionError::new).getLanguages());
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        PersistentEntityCache cache = new PersistentEntityCache(directory, MAX_BYTES, 1, TimeUnit.DAYS);
+        cache.put(42, buildEntity(42, "Douglas Adams"), 1234, LANGUAGES);
+        cache.put(43, buildEntity(43, "Foo"), 5678, null);
+        cache.invalidate(43);
+        cache.flush();
+        long writeTime = cache.get(42).orElseThrow(AssertionError::new).getWriteTime();
+
+        PersistentEntityCache reopenedCache = new PersistentEntityCache(directory, MAX_BYTES, 1, TimeUnit.DAYS);
+        PersistentEntityCache.Entry entry = reopenedCache.get(42).orElseThrow(AssertionError::new);
+        assertEquals(1234, entry.getRevisionId());
+        assertEquals(LANGUAGES, entry.getLanguages());
+        assertEquals(writeTime, entry.getWriteTime());
+        assertFalse(reopenedCache.get(43).isPresent());
+    }
+
+    @Test
+    public void testExpiration() throws IOException, InterruptedException {
+        PersistentEntityCache cache = new PersistentEntityCache(folder.getRoot().toPath(), MAX_BYTES, 1, TimeUnit.MILLISECONDS);
+        cache.put(42, buildEntity(42, "Douglas Adams"), 1234, LANGUAGES);
+        Thread.sleep(10);
+        assertFalse(cache.get(42).isPresent());
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        PersistentEntityCache cache = new PersistentEntityCache(directory, MAX_BYTES, 1, TimeUnit.DAYS);
+        assertFalse(cache.needsCompaction());
+        char[] padding = new char[10000];
+        Arrays.fill(padding, 'a');
+        //The same few keys are written again and again: the filled segments are mostly dead
+        for (int i = 0; i < 500; i++) {
+            cache.put(i % 10, buildEntity(i % 10, "Entity " + i + new String(padding)), i, LANGUAGES);
+        }
+        assertTrue(cache.needsCompaction());
+        int segmentCount = countSegments(directory);
+        assertTrue(segmentCount > 2);
+
+        cache.compact();
+        assertFalse(cache.needsCompaction());
+        assertTrue(countSegments(directory) < segmentCount);
+        for (int i = 490; i < 500; i++) {
+            Optional<PersistentEntityCache.Entry> entry = cache.get(i % 10);
+            assertTrue(entry.isPresent());
+            assertEquals(i, entry.get().getRevisionId());
+        }
+    }
+
+    @Test
+    public void testInvalidSegmentsAreDeleted() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Files.write(directory.resolve("segment-0"), new byte[1 << 20]);
+        PersistentEntityCache cache = new PersistentEntityCache(directory, MAX_BYTES, 1, TimeUnit.DAYS);
+        cache.put(42, buildEntity(42, "Douglas Adams"), 1234, LANGUAGES);
+        assertTrue(cache.get(42).isPresent());
+    }
+
+    private static EntityValue buildEntity(long itemNumber, String name) {
+        EntityValue entity = new EntityValue("wd:Q" + itemNumber);
+        entity.addType("Thing");
+        entity.addClaim("name", new LocaleStringValue(name, "en"));
+        entity.addClaim("sameAs", EntityIdValue.of("wd:Q1"));
+        return entity;
+    }
+
+    private static int countSegments(Path directory) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*")) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}